@@ -0,0 +1,410 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Many 3x3 puzzle states stored as a structure of arrays, for moving large
+ * numbers of states at once in scramble studies and solver benchmarks. Each
+ * corner and edge position has its own array with one byte for every state,
+ * holding the same five bits as CubeState, and the turn of each state is in
+ * one more array.
+ * 
+ * When every state gets the same move and the states are all turned the
+ * same way, a move only swaps the arrays of the positions it cycles and adds
+ * the twist or flip to the arrays that need it. Those loops are simple
+ * enough for the JIT to compile to vector instructions.
+ * 
+ * Different moves for each state, or states turned different ways, are
+ * first sorted into groups that make the same move from the same turn, at
+ * most 24 * 18 of them. Each group is then moved one position at a time
+ * around the cycles of the move, so the move tables are read once for each
+ * group instead of once for each state. The states are sorted a block at a
+ * time to keep the positions being moved in cache. That is several times
+ * quicker than moving each state on its own, but still slower than a move
+ * shared by every state.
+ */
+public class CubeBatch {
+
+	private static final int MOVES = 6 * 3;
+
+	// Groups of states, indexed by turn * MOVES + move
+	private static final int GROUPS = Rotation.COUNT * MOVES;
+
+	// States sorted at a time, few enough that their positions stay in cache
+	private static final int BLOCK = 1 << 12;
+
+	private final int size;
+
+	// Corner and twist at each position, indexed by position then state
+	private byte[][] corners = new byte[CubieCube.CORNERS][];
+	private byte[][] nextCorners = new byte[CubieCube.CORNERS][];
+
+	// Edge and flip at each position, indexed by position then state
+	private byte[][] edges = new byte[CubieCube.EDGES][];
+	private byte[][] nextEdges = new byte[CubieCube.EDGES][];
+
+	// Turn of the whole puzzle for each state, see Rotation
+	private final byte[] turns;
+
+	// Turn shared by every state, or -1 if they are turned different ways
+	private int commonTurn;
+
+	// First of each group in order and the next free place in it
+	private final int[] groupStarts = new int[GROUPS + 1];
+	private final int[] groupEnds = new int[GROUPS];
+
+	// States sorted by group, in ascending order within each group
+	private final int[] order;
+
+	// First position of a cycle while the group moves around it
+	private final byte[] cycleValues;
+
+	/**
+	 * Create a batch of solved states
+	 * 
+	 * @param size
+	 *            number of states
+	 */
+	public CubeBatch(int size) {
+		this.size = size;
+
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			corners[i] = new byte[size];
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			edges[i] = new byte[size];
+		}
+		turns = new byte[size];
+
+		order = new int[size];
+		cycleValues = new byte[size];
+
+		reset();
+	}
+
+	/**
+	 * Solve every state
+	 */
+	public void reset() {
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			fill(corners[i], (byte) i);
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			fill(edges[i], (byte) i);
+		}
+		fill(turns, (byte) Rotation.IDENTITY);
+
+		commonTurn = Rotation.IDENTITY;
+	}
+
+	private static void fill(byte[] values, byte value) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = value;
+		}
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void set(int index, CubeState state) {
+		long packed = state.getCorners();
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			corners[i][index] = (byte) (packed >>> (5 * i) & 31);
+		}
+
+		packed = state.getEdges();
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			edges[i][index] = (byte) (packed >>> (5 * i) & 31);
+		}
+
+		turns[index] = (byte) state.getTurn();
+		if (commonTurn != state.getTurn()) {
+			commonTurn = (size == 1) ? state.getTurn() : -1;
+		}
+	}
+
+	public CubeState get(int index) {
+		long packedCorners = 0, packedEdges = 0;
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			packedCorners |= (long) corners[i][index] << (5 * i);
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			packedEdges |= (long) edges[i][index] << (5 * i);
+		}
+
+		return new CubeState(packedCorners, packedEdges, turns[index]);
+	}
+
+	/**
+	 * Check if every face of a state is a single color
+	 */
+	public boolean isSolved(int index) {
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			if (corners[i][index] != i) {
+				return false;
+			}
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			if (edges[i][index] != i) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Rotate the same layer of every state
+	 * 
+	 * @param move
+	 *            move code of a 3x3 puzzle, see Move
+	 */
+	public void apply(int move) {
+		if (commonTurn < 0) {
+			applyGroups(null, move);
+			return;
+		}
+
+		int turn = commonTurn;
+
+		// Move whole arrays to their new positions
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			nextCorners[i] = corners[CubeState.getMoveCornerFrom(turn, move,
+					i)];
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			nextEdges[i] = edges[CubeState.getMoveEdgeFrom(turn, move, i)];
+		}
+
+		byte[][] swap = corners;
+		corners = nextCorners;
+		nextCorners = swap;
+
+		swap = edges;
+		edges = nextEdges;
+		nextEdges = swap;
+
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			int twist = CubeState.getMoveCornerTwist(turn, move, i);
+			if (twist != 0) {
+				addTwist(corners[i], twist << 3);
+			}
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			if (CubeState.getMoveEdgeFlip(turn, move, i) != 0) {
+				flip(edges[i]);
+			}
+		}
+
+		commonTurn = CubeState.getMoveTurn(turn, move);
+		if (commonTurn != turn) {
+			fill(turns, (byte) commonTurn);
+		}
+	}
+
+	/**
+	 * Add a twist to a corner array without branching, the twist is in bits
+	 * 3-4 and wraps from 3 back to 0
+	 */
+	private void addTwist(byte[] values, int twist) {
+		for (int i = 0; i < size; i++) {
+			int value = values[i] + twist;
+			values[i] = (byte) (value - ((23 - value) >> 31 & 24));
+		}
+	}
+
+	private void flip(byte[] values) {
+		for (int i = 0; i < size; i++) {
+			values[i] ^= 16;
+		}
+	}
+
+	/**
+	 * Rotate a different layer of each state
+	 * 
+	 * @param moves
+	 *            move code for each state, see Move
+	 */
+	public void apply(byte[] moves) {
+		applyGroups(moves, 0);
+	}
+
+	/**
+	 * Move the states in groups by turn and move, a block at a time
+	 * 
+	 * @param moves
+	 *            move code for each state, or null to give every state move
+	 */
+	private void applyGroups(byte[] moves, int move) {
+		for (int block = 0; block < size; block += BLOCK) {
+			applyGroups(moves, move, block, Math.min(block + BLOCK, size));
+		}
+
+		commonTurn = turns[0];
+		for (int index = 1; index < size && commonTurn >= 0; index++) {
+			if (turns[index] != commonTurn) {
+				commonTurn = -1;
+			}
+		}
+	}
+
+	/**
+	 * Sort the states first to last - 1 into groups by counting, then move
+	 * each group
+	 */
+	private void applyGroups(byte[] moves, int move, int first, int last) {
+		int[] starts = groupStarts;
+		for (int group = 0; group <= GROUPS; group++) {
+			starts[group] = first;
+		}
+
+		for (int index = first; index < last; index++) {
+			int stateMove = (moves != null) ? moves[index] : move;
+			starts[turns[index] * MOVES + stateMove + 1]++;
+		}
+		for (int group = 0; group < GROUPS; group++) {
+			starts[group + 1] += starts[group] - first;
+		}
+
+		System.arraycopy(starts, 0, groupEnds, 0, GROUPS);
+		for (int index = first; index < last; index++) {
+			int stateMove = (moves != null) ? moves[index] : move;
+			order[groupEnds[turns[index] * MOVES + stateMove]++] = index;
+		}
+
+		for (int group = 0; group < GROUPS; group++) {
+			if (starts[group] < starts[group + 1]) {
+				applyGroup(group / MOVES, group % MOVES, starts[group],
+						starts[group + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Make one move on the states order[start] to order[end - 1], which are
+	 * all turned the same way
+	 */
+	private void applyGroup(int turn, int move, int start, int end) {
+		int moved = 0;
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			if ((moved & (1 << i)) != 0) {
+				continue;
+			}
+
+			int from = CubeState.getMoveCornerFrom(turn, move, i);
+			if (from == i) {
+				int twist = CubeState.getMoveCornerTwist(turn, move, i);
+				if (twist != 0) {
+					twistGroup(corners[i], corners[i], twist << 3, start, end);
+				}
+				continue;
+			}
+
+			// Keep the first position, then walk back around the cycle
+			saveGroup(corners[i], start, end);
+			int to = i;
+			while (from != i) {
+				twistGroup(corners[from], corners[to],
+						CubeState.getMoveCornerTwist(turn, move, to) << 3,
+						start, end);
+				moved |= 1 << to;
+
+				to = from;
+				from = CubeState.getMoveCornerFrom(turn, move, to);
+			}
+			twistSaved(corners[to],
+					CubeState.getMoveCornerTwist(turn, move, to) << 3, start,
+					end);
+			moved |= 1 << to;
+		}
+
+		moved = 0;
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			if ((moved & (1 << i)) != 0) {
+				continue;
+			}
+
+			int from = CubeState.getMoveEdgeFrom(turn, move, i);
+			if (from == i) {
+				if (CubeState.getMoveEdgeFlip(turn, move, i) != 0) {
+					flipGroup(edges[i], edges[i], 16, start, end);
+				}
+				continue;
+			}
+
+			saveGroup(edges[i], start, end);
+			int to = i;
+			while (from != i) {
+				flipGroup(edges[from], edges[to],
+						CubeState.getMoveEdgeFlip(turn, move, to) << 4, start,
+						end);
+				moved |= 1 << to;
+
+				to = from;
+				from = CubeState.getMoveEdgeFrom(turn, move, to);
+			}
+			flipSaved(edges[to], CubeState.getMoveEdgeFlip(turn, move, to) << 4,
+					start, end);
+			moved |= 1 << to;
+		}
+
+		byte nextTurn = (byte) CubeState.getMoveTurn(turn, move);
+		if (nextTurn != turn) {
+			for (int k = start; k < end; k++) {
+				turns[order[k]] = nextTurn;
+			}
+		}
+	}
+
+	private void saveGroup(byte[] values, int start, int end) {
+		for (int k = start; k < end; k++) {
+			cycleValues[k] = values[order[k]];
+		}
+	}
+
+	/**
+	 * Write the saved corner position of each state of a group to another
+	 * position and add a twist
+	 */
+	private void twistSaved(byte[] to, int twist, int start, int end) {
+		for (int k = start; k < end; k++) {
+			int value = cycleValues[k] + twist;
+			to[order[k]] = (byte) (value - ((23 - value) >> 31 & 24));
+		}
+	}
+
+	/**
+	 * Write the saved edge position of each state of a group to another
+	 * position and flip it
+	 */
+	private void flipSaved(byte[] to, int flip, int start, int end) {
+		for (int k = start; k < end; k++) {
+			to[order[k]] = (byte) (cycleValues[k] ^ flip);
+		}
+	}
+
+	/**
+	 * Copy a corner position of each state of a group to another position
+	 * and add a twist, see addTwist
+	 */
+	private void twistGroup(byte[] from, byte[] to, int twist, int start,
+			int end) {
+		for (int k = start; k < end; k++) {
+			int index = order[k];
+			int value = from[index] + twist;
+			to[index] = (byte) (value - ((23 - value) >> 31 & 24));
+		}
+	}
+
+	/**
+	 * Copy an edge position of each state of a group to another position and
+	 * flip it
+	 */
+	private void flipGroup(byte[] from, byte[] to, int flip, int start,
+			int end) {
+		for (int k = start; k < end; k++) {
+			int index = order[k];
+			to[index] = (byte) (from[index] ^ flip);
+		}
+	}
+
+}
@@ -0,0 +1,294 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * The effect of a sequence of moves as one permutation of the slots of a
+ * puzzle. For each slot it stores the slot whose cube ends up there and how
+ * that cube is turned on the way, so any number of moves can be applied to a
+ * PuzzleState in one pass over the cubes. Permutations can be composed and
+ * raised to a power by squaring, so repeating an algorithm n times costs
+ * log n compositions instead of n times its length.
+ */
+public class CubePermutation {
+
+	private final PuzzleGeometry geometry;
+
+	// Slot the cube in each slot came from
+	private final short[] sources;
+
+	// Rotation of the cube in each slot, see Rotation
+	private final byte[] rotations;
+
+	// Scratch arrays so the arguments of compose can be this permutation
+	private final short[] nextSources;
+	private final byte[] nextRotations;
+
+	/**
+	 * Create the identity permutation
+	 * 
+	 * @param size
+	 *            number of cubes along each edge of the puzzle
+	 */
+	public CubePermutation(int size) {
+		geometry = PuzzleGeometry.get(size);
+
+		sources = new short[geometry.getCount()];
+		rotations = new byte[geometry.getCount()];
+		nextSources = new short[geometry.getCount()];
+		nextRotations = new byte[geometry.getCount()];
+
+		reset();
+	}
+
+	/**
+	 * Set to the identity, which moves nothing
+	 */
+	public void reset() {
+		for (int slot = 0; slot < sources.length; slot++) {
+			sources[slot] = (short) slot;
+			rotations[slot] = Rotation.IDENTITY;
+		}
+	}
+
+	public void set(CubePermutation permutation) {
+		checkSize(permutation);
+
+		System.arraycopy(permutation.sources, 0, sources, 0, sources.length);
+		System.arraycopy(permutation.rotations, 0, rotations, 0,
+				rotations.length);
+	}
+
+	/**
+	 * Set to the permutation of a sequence of moves
+	 * 
+	 * @param moves
+	 *            move codes, see Move and Notation
+	 * @param offset
+	 *            first move to use
+	 * @param length
+	 *            number of moves to use
+	 */
+	public void setMoves(byte[] moves, int offset, int length) {
+		reset();
+
+		for (int i = offset; i < offset + length; i++) {
+			apply(moves[i]);
+		}
+	}
+
+	/**
+	 * Follow this permutation with one more move
+	 * 
+	 * @param move
+	 *            move code, see Move
+	 */
+	public void apply(int move) {
+		int rotation = Rotation.getMoveRotation(move);
+		boolean positive = (Move.getDirection(move) == Move.POSITIVE);
+
+		int[] cycles = geometry.getCycles(move);
+		for (int i = 0; i < cycles.length; i += 4) {
+			int a = cycles[i], b = cycles[i + 1];
+			int c = cycles[i + 2], d = cycles[i + 3];
+
+			// Move the entries the same way PuzzleState moves cubes
+			short source;
+			byte turn;
+			if (positive) {
+				source = sources[d];
+				turn = rotations[d];
+				move(c, d);
+				move(b, c);
+				move(a, b);
+			} else {
+				source = sources[a];
+				turn = rotations[a];
+				move(b, a);
+				move(c, b);
+				move(d, c);
+			}
+
+			int last = positive ? a : d;
+			sources[last] = source;
+			rotations[last] = turn;
+
+			turn(a, rotation);
+			turn(b, rotation);
+			turn(c, rotation);
+			turn(d, rotation);
+		}
+
+		for (int slot : geometry.getFixedSlots(move)) {
+			turn(slot, rotation);
+		}
+	}
+
+	private void move(int from, int to) {
+		sources[to] = sources[from];
+		rotations[to] = rotations[from];
+	}
+
+	private void turn(int slot, int rotation) {
+		rotations[slot] = (byte) Rotation.compose(rotation, rotations[slot]);
+	}
+
+	/**
+	 * Set to one permutation followed by another. Either may be this
+	 * permutation.
+	 * 
+	 * @param first
+	 *            permutation applied first
+	 * @param second
+	 *            permutation applied second
+	 */
+	public void compose(CubePermutation first, CubePermutation second) {
+		checkSize(first);
+		checkSize(second);
+
+		for (int slot = 0; slot < sources.length; slot++) {
+			int middle = second.sources[slot];
+
+			nextSources[slot] = first.sources[middle];
+			nextRotations[slot] = (byte) Rotation.compose(
+					second.rotations[slot], first.rotations[middle]);
+		}
+
+		System.arraycopy(nextSources, 0, sources, 0, sources.length);
+		System.arraycopy(nextRotations, 0, rotations, 0, rotations.length);
+	}
+
+	/**
+	 * Set to the permutation that undoes this one
+	 */
+	public void invert() {
+		for (int slot = 0; slot < sources.length; slot++) {
+			nextSources[sources[slot]] = (short) slot;
+			nextRotations[sources[slot]] = (byte) Rotation
+					.inverse(rotations[slot]);
+		}
+
+		System.arraycopy(nextSources, 0, sources, 0, sources.length);
+		System.arraycopy(nextRotations, 0, rotations, 0, rotations.length);
+	}
+
+	/**
+	 * Set to a permutation applied a number of times, by squaring
+	 * 
+	 * @param permutation
+	 *            permutation to repeat, may be this permutation
+	 * @param times
+	 *            number of times, negative to undo it that many times
+	 * @param scratch
+	 *            permutation of the same size to hold the squares
+	 */
+	public void power(CubePermutation permutation, long times,
+			CubePermutation scratch) {
+		scratch.set(permutation);
+		if (times < 0) {
+			scratch.invert();
+			times = -times;
+		}
+
+		reset();
+		while (times > 0) {
+			if ((times & 1) != 0) {
+				compose(this, scratch);
+			}
+
+			times >>= 1;
+			if (times > 0) {
+				scratch.compose(scratch, scratch);
+			}
+		}
+	}
+
+	/**
+	 * Number of times the permutation has to be repeated to get back to where
+	 * it started. Cubes with one sticker only have to be back in their slot,
+	 * their orientation can not be seen. Each cube is still told apart from
+	 * the others, even center cubes that look the same on larger puzzles.
+	 * 
+	 * @return order, or Long.MAX_VALUE if it is too large for a long
+	 */
+	public long getOrder() {
+		boolean[] visited = new boolean[sources.length];
+		long order = 1;
+
+		for (int start = 0; start < sources.length; start++) {
+			if (visited[start]) {
+				continue;
+			}
+
+			// Follow the cycle, combining the rotations along it
+			int length = 0;
+			int rotation = Rotation.IDENTITY;
+			for (int slot = start; !visited[slot]; slot = sources[slot]) {
+				visited[slot] = true;
+				rotation = Rotation.compose(rotation, rotations[slot]);
+				length++;
+			}
+
+			if (Integer.bitCount(geometry.getStickers(start)) > 1) {
+				length *= getRotationOrder(rotation);
+			}
+
+			order = lcm(order, length);
+			if (order == Long.MAX_VALUE) {
+				break;
+			}
+		}
+
+		return order;
+	}
+
+	private static int getRotationOrder(int rotation) {
+		int order = 1;
+		for (int r = rotation; r != Rotation.IDENTITY; r = Rotation.compose(
+				rotation, r)) {
+			order++;
+		}
+
+		return order;
+	}
+
+	private static long lcm(long a, long b) {
+		long x = a, y = b;
+		while (y != 0) {
+			long t = x % y;
+			x = y;
+			y = t;
+		}
+
+		long factor = b / x;
+		if (a > Long.MAX_VALUE / factor) {
+			return Long.MAX_VALUE;
+		}
+
+		return a * factor;
+	}
+
+	/**
+	 * Slot the cube in a slot came from
+	 */
+	public int getSource(int slot) {
+		return sources[slot];
+	}
+
+	/**
+	 * Rotation of the cube in a slot, see Rotation
+	 */
+	public int getRotation(int slot) {
+		return rotations[slot];
+	}
+
+	public int getSize() {
+		return geometry.getSize();
+	}
+
+	private void checkSize(CubePermutation permutation) {
+		if (permutation.geometry != geometry) {
+			throw new IllegalArgumentException("Puzzle sizes do not match: "
+					+ permutation.getSize() + " and " + getSize());
+		}
+	}
+
+}
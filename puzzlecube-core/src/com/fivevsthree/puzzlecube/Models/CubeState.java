@@ -0,0 +1,320 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Immutable state of a 3x3 puzzle packed into two longs and a byte, so it
+ * can be handed to other threads, kept in search trees and used as a map key
+ * without copying or locking. Moving returns a new state and leaves this one
+ * as it was.
+ * 
+ * The corners and edges are stored the same way as CubieCube, relative to
+ * the centers, with five bits for each: the corner and its twist in bits 0-2
+ * and 3-4, or the edge and its flip in bits 0-3 and 4. How the whole puzzle
+ * has been turned is kept as a rotation index, see Rotation, so every move
+ * code of a 3x3 puzzle can be applied, middle layers included.
+ */
+public final class CubeState {
+
+	private static final int SIZE = 3;
+	private static final int MOVES = 6 * SIZE;
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	// @formatter:off
+
+	/*
+	 * Effect of each move code for each turn of the whole puzzle, indexed by
+	 * turn * MOVES + move: the position each corner and edge comes from, the
+	 * twist or flip it gains and the turn of the puzzle afterwards
+	 */
+	private static final byte[] CORNER_FROM = new byte[Rotation.COUNT * MOVES * CubieCube.CORNERS];
+	private static final byte[] CORNER_TWIST = new byte[Rotation.COUNT * MOVES * CubieCube.CORNERS];
+	private static final byte[] EDGE_FROM = new byte[Rotation.COUNT * MOVES * CubieCube.EDGES];
+	private static final byte[] EDGE_FLIP = new byte[Rotation.COUNT * MOVES * CubieCube.EDGES];
+	private static final byte[] NEXT_TURN = new byte[Rotation.COUNT * MOVES];
+
+	// @formatter:on
+
+	/**
+	 * The solved puzzle, not turned
+	 */
+	public static final CubeState SOLVED;
+
+	static {
+		long corners = 0, edges = 0;
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			corners |= (long) i << (BITS * i);
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			edges |= (long) i << (BITS * i);
+		}
+		SOLVED = new CubeState(corners, edges, Rotation.IDENTITY);
+
+		// Make each move on a solved puzzle turned each way and read the result
+		PuzzleState state = new PuzzleState(SIZE);
+		CubieCube cubies = new CubieCube();
+
+		for (int turn = 0; turn < Rotation.COUNT; turn++) {
+			for (int move = 0; move < MOVES; move++) {
+				int index = turn * MOVES + move;
+
+				state.reset();
+				turnWhole(state, turn);
+				state.apply(move);
+				cubies.set(state);
+
+				for (int i = 0; i < CubieCube.CORNERS; i++) {
+					CORNER_FROM[index * CubieCube.CORNERS + i] = (byte) cubies
+							.getCorner(i);
+					CORNER_TWIST[index * CubieCube.CORNERS + i] = (byte) cubies
+							.getCornerTwist(i);
+				}
+				for (int i = 0; i < CubieCube.EDGES; i++) {
+					EDGE_FROM[index * CubieCube.EDGES + i] = (byte) cubies
+							.getEdge(i);
+					EDGE_FLIP[index * CubieCube.EDGES + i] = (byte) cubies
+							.getEdgeFlip(i);
+				}
+				NEXT_TURN[index] = (byte) CubieCube.getTurn(state);
+			}
+		}
+	}
+
+	private final long corners;
+	private final long edges;
+	private final byte turn;
+
+	CubeState(long corners, long edges, int turn) {
+		this.corners = corners;
+		this.edges = edges;
+		this.turn = (byte) turn;
+	}
+
+	/**
+	 * Take a snapshot of a 3x3 puzzle state
+	 * 
+	 * @param state
+	 *            state of a 3x3 puzzle
+	 */
+	public static CubeState of(PuzzleState state) {
+		CubieCube cubies = new CubieCube();
+		cubies.set(state);
+
+		return of(cubies, CubieCube.getTurn(state));
+	}
+
+	/**
+	 * Pack corners and edges
+	 * 
+	 * @param cubies
+	 *            corners and edges relative to the centers
+	 * @param turn
+	 *            rotation index of the whole puzzle, see Rotation
+	 */
+	public static CubeState of(CubieCube cubies, int turn) {
+		long corners = 0, edges = 0;
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			int value = cubies.getCorner(i) | cubies.getCornerTwist(i) << 3;
+			corners |= (long) value << (BITS * i);
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			int value = cubies.getEdge(i) | cubies.getEdgeFlip(i) << 4;
+			edges |= (long) value << (BITS * i);
+		}
+
+		return new CubeState(corners, edges, turn);
+	}
+
+	/**
+	 * Rotate a layer
+	 * 
+	 * @param move
+	 *            move code of a 3x3 puzzle, see Move
+	 * @return the state after the move
+	 */
+	public CubeState applyMove(int move) {
+		int index = turn * MOVES + move;
+
+		long corners = 0;
+		int offset = index * CubieCube.CORNERS;
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			int value = get(this.corners, CORNER_FROM[offset + i]);
+
+			int twist = (value >> 3) + CORNER_TWIST[offset + i];
+			if (twist >= 3) {
+				twist -= 3;
+			}
+
+			corners |= (long) ((value & 7) | twist << 3) << (BITS * i);
+		}
+
+		long edges = 0;
+		offset = index * CubieCube.EDGES;
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			int value = get(this.edges, EDGE_FROM[offset + i])
+					^ EDGE_FLIP[offset + i] << 4;
+			edges |= (long) value << (BITS * i);
+		}
+
+		return new CubeState(corners, edges, NEXT_TURN[index]);
+	}
+
+	/**
+	 * Rotate layers for a compiled algorithm, see Notation
+	 * 
+	 * @param moves
+	 *            move codes in the order to apply them
+	 * @return the state after the moves
+	 */
+	public CubeState applyMoves(byte[] moves) {
+		CubeState state = this;
+		for (int i = 0; i < moves.length; i++) {
+			state = state.applyMove(moves[i]);
+		}
+
+		return state;
+	}
+
+	/*
+	 * Move tables for CubeBatch, with the same meaning as in applyMove
+	 */
+
+	static int getMoveCornerFrom(int turn, int move, int position) {
+		return CORNER_FROM[(turn * MOVES + move) * CubieCube.CORNERS
+				+ position];
+	}
+
+	static int getMoveCornerTwist(int turn, int move, int position) {
+		return CORNER_TWIST[(turn * MOVES + move) * CubieCube.CORNERS
+				+ position];
+	}
+
+	static int getMoveEdgeFrom(int turn, int move, int position) {
+		return EDGE_FROM[(turn * MOVES + move) * CubieCube.EDGES + position];
+	}
+
+	static int getMoveEdgeFlip(int turn, int move, int position) {
+		return EDGE_FLIP[(turn * MOVES + move) * CubieCube.EDGES + position];
+	}
+
+	static int getMoveTurn(int turn, int move) {
+		return NEXT_TURN[turn * MOVES + move];
+	}
+
+	long getCorners() {
+		return corners;
+	}
+
+	long getEdges() {
+		return edges;
+	}
+
+	private static int get(long packed, int position) {
+		return (int) (packed >>> (BITS * position)) & MASK;
+	}
+
+	/**
+	 * Check if every face is a single color. Turning the whole puzzle does not
+	 * change this.
+	 */
+	public boolean isSolved() {
+		return corners == SOLVED.corners && edges == SOLVED.edges;
+	}
+
+	public int getCorner(int position) {
+		return get(corners, position) & 7;
+	}
+
+	public int getCornerTwist(int position) {
+		return get(corners, position) >> 3;
+	}
+
+	public int getEdge(int position) {
+		return get(edges, position) & 15;
+	}
+
+	public int getEdgeFlip(int position) {
+		return get(edges, position) >> 4;
+	}
+
+	/**
+	 * How the whole puzzle has been turned, see CubieCube.getTurn
+	 * 
+	 * @return rotation index, see Rotation
+	 */
+	public int getTurn() {
+		return turn;
+	}
+
+	/**
+	 * Unpack the corners and edges
+	 * 
+	 * @param cubies
+	 *            set to the corners and edges relative to the centers
+	 */
+	public void get(CubieCube cubies) {
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			cubies.setCorner(i, getCorner(i), getCornerTwist(i));
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			cubies.setEdge(i, getEdge(i), getEdgeFlip(i));
+		}
+	}
+
+	/**
+	 * Write the whole state into a 3x3 puzzle state. Centers are not turned
+	 * in place, which can not be seen, so the hash may differ from the state
+	 * the snapshot was taken from.
+	 * 
+	 * @param state
+	 *            state of a 3x3 puzzle
+	 */
+	public void get(PuzzleState state) {
+		CubieCube cubies = new CubieCube();
+		get(cubies);
+		cubies.get(state);
+
+		turnWhole(state, turn);
+	}
+
+	/**
+	 * Turn every cube of a puzzle state by the same rotation
+	 */
+	private static void turnWhole(PuzzleState state, int rotation) {
+		PuzzleGeometry geometry = state.getGeometry();
+		int[] locations = new int[geometry.getCount() * 3];
+		int[] rotations = new int[geometry.getCount()];
+
+		for (int slot = 0; slot < geometry.getCount(); slot++) {
+			int cube = state.getCubeAt(slot);
+			int to = geometry.getRotatedSlot(rotation, slot);
+
+			for (int axis = 0; axis < 3; axis++) {
+				locations[cube * 3 + axis] = geometry.getLocation(to, axis);
+			}
+			rotations[cube] = Rotation.compose(rotation,
+					state.getOrientation(cube));
+		}
+
+		state.set(locations, rotations);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof CubeState)) {
+			return false;
+		}
+
+		CubeState state = (CubeState) other;
+		return corners == state.corners && edges == state.edges
+				&& turn == state.turn;
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = corners * 31 + edges;
+		hash = hash * 31 + turn;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+}
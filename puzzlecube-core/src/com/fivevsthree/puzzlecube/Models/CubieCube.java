@@ -0,0 +1,464 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * A 3x3 puzzle described by its 8 corners and 12 edges, the form puzzle
+ * tables and solvers work with. Each position holds a piece and that piece's
+ * twist or flip. The centers are always at home, a puzzle that has been
+ * turned as a whole is turned back first.
+ * 
+ * Corners are URF, UFL, ULB, UBR, DFR, DLF, DBL, DRB and edges are UR, UF, UL,
+ * UB, DR, DF, DL, DB, FR, FL, BL, BR, where U is the top, F the front and R
+ * the right. A corner's twist is the number of clockwise turns that would
+ * bring its top or bottom sticker back to the top or bottom, and an edge is
+ * flipped when its first sticker is not on the first face of its position.
+ */
+public class CubieCube {
+
+	public static final int CORNERS = 8;
+	public static final int EDGES = 12;
+
+	// @formatter:off
+
+	// Faces of each corner position, clockwise starting from the top or bottom
+	private static final int[][] CORNER_FACES = {
+			{ PuzzleState.TOP, PuzzleState.RIGHT, PuzzleState.FRONT },
+			{ PuzzleState.TOP, PuzzleState.FRONT, PuzzleState.LEFT },
+			{ PuzzleState.TOP, PuzzleState.LEFT, PuzzleState.BACK },
+			{ PuzzleState.TOP, PuzzleState.BACK, PuzzleState.RIGHT },
+			{ PuzzleState.BOTTOM, PuzzleState.FRONT, PuzzleState.RIGHT },
+			{ PuzzleState.BOTTOM, PuzzleState.LEFT, PuzzleState.FRONT },
+			{ PuzzleState.BOTTOM, PuzzleState.BACK, PuzzleState.LEFT },
+			{ PuzzleState.BOTTOM, PuzzleState.RIGHT, PuzzleState.BACK } };
+
+	// Faces of each edge position, the first one decides the flip
+	private static final int[][] EDGE_FACES = {
+			{ PuzzleState.TOP, PuzzleState.RIGHT },
+			{ PuzzleState.TOP, PuzzleState.FRONT },
+			{ PuzzleState.TOP, PuzzleState.LEFT },
+			{ PuzzleState.TOP, PuzzleState.BACK },
+			{ PuzzleState.BOTTOM, PuzzleState.RIGHT },
+			{ PuzzleState.BOTTOM, PuzzleState.FRONT },
+			{ PuzzleState.BOTTOM, PuzzleState.LEFT },
+			{ PuzzleState.BOTTOM, PuzzleState.BACK },
+			{ PuzzleState.FRONT, PuzzleState.RIGHT },
+			{ PuzzleState.FRONT, PuzzleState.LEFT },
+			{ PuzzleState.BACK, PuzzleState.LEFT },
+			{ PuzzleState.BACK, PuzzleState.RIGHT } };
+
+	// @formatter:on
+
+	// Slot of each position on a 3x3 PuzzleState
+	private static final int[] CORNER_SLOTS = new int[CORNERS];
+	private static final int[] EDGE_SLOTS = new int[EDGES];
+	private static final int[] CENTER_SLOTS = new int[6];
+
+	// Corner or edge of each 3x3 cube index, -1 for other cubes
+	private static final byte[] CUBE_CORNERS;
+	private static final byte[] CUBE_EDGES;
+
+	static {
+		PuzzleGeometry geometry = PuzzleGeometry.get(3);
+
+		CUBE_CORNERS = new byte[geometry.getCount()];
+		CUBE_EDGES = new byte[geometry.getCount()];
+		for (int i = 0; i < geometry.getCount(); i++) {
+			CUBE_CORNERS[i] = CUBE_EDGES[i] = -1;
+		}
+
+		for (int i = 0; i < CORNERS; i++) {
+			CORNER_SLOTS[i] = getSlot(geometry, CORNER_FACES[i]);
+			CUBE_CORNERS[CORNER_SLOTS[i]] = (byte) i;
+		}
+
+		for (int i = 0; i < EDGES; i++) {
+			EDGE_SLOTS[i] = getSlot(geometry, EDGE_FACES[i]);
+			CUBE_EDGES[EDGE_SLOTS[i]] = (byte) i;
+		}
+
+		for (int face = 0; face < 6; face++) {
+			CENTER_SLOTS[face] = getSlot(geometry, new int[] { face });
+		}
+	}
+
+	// Piece and orientation in each position
+	private final byte[] cornerPermutation = new byte[CORNERS];
+	private final byte[] cornerTwist = new byte[CORNERS];
+	private final byte[] edgePermutation = new byte[EDGES];
+	private final byte[] edgeFlip = new byte[EDGES];
+
+	/**
+	 * Create a solved cube
+	 */
+	public CubieCube() {
+		reset();
+	}
+
+	public void reset() {
+		for (int i = 0; i < CORNERS; i++) {
+			cornerPermutation[i] = (byte) i;
+			cornerTwist[i] = 0;
+		}
+
+		for (int i = 0; i < EDGES; i++) {
+			edgePermutation[i] = (byte) i;
+			edgeFlip[i] = 0;
+		}
+	}
+
+	public void set(CubieCube cube) {
+		System.arraycopy(cube.cornerPermutation, 0, cornerPermutation, 0,
+				CORNERS);
+		System.arraycopy(cube.cornerTwist, 0, cornerTwist, 0, CORNERS);
+		System.arraycopy(cube.edgePermutation, 0, edgePermutation, 0, EDGES);
+		System.arraycopy(cube.edgeFlip, 0, edgeFlip, 0, EDGES);
+	}
+
+	/**
+	 * Read the corners and edges of a 3x3 puzzle state
+	 * 
+	 * @param state
+	 *            state of a 3x3 puzzle
+	 */
+	public void set(PuzzleState state) {
+		if (state.getSize() != 3) {
+			throw new IllegalArgumentException("Not a 3x3 puzzle: "
+					+ state.getSize());
+		}
+
+		PuzzleGeometry geometry = state.getGeometry();
+		int turn = getTurn(state);
+		int undo = Rotation.inverse(turn);
+
+		for (int i = 0; i < CORNERS; i++) {
+			int cube = state.getCubeAt(geometry.getRotatedSlot(turn,
+					CORNER_SLOTS[i]));
+			int orientation = Rotation.compose(undo, state.getOrientation(cube));
+			int corner = CUBE_CORNERS[cube];
+
+			cornerPermutation[i] = (byte) corner;
+			cornerTwist[i] = (byte) indexOf(CORNER_FACES[i],
+					PuzzleState.getRotatedFace(orientation,
+							CORNER_FACES[corner][0]));
+		}
+
+		for (int i = 0; i < EDGES; i++) {
+			int cube = state.getCubeAt(geometry.getRotatedSlot(turn,
+					EDGE_SLOTS[i]));
+			int orientation = Rotation.compose(undo, state.getOrientation(cube));
+			int edge = CUBE_EDGES[cube];
+
+			edgePermutation[i] = (byte) edge;
+			edgeFlip[i] = (byte) indexOf(EDGE_FACES[i],
+					PuzzleState.getRotatedFace(orientation, EDGE_FACES[edge][0]));
+		}
+	}
+
+	/**
+	 * How the whole of a 3x3 puzzle has been turned, found from where the
+	 * centers are. The corners and edges are read relative to the centers, so
+	 * this is the part of the state that set(PuzzleState) leaves out.
+	 * 
+	 * @param state
+	 *            state of a 3x3 puzzle
+	 * @return rotation index, see Rotation
+	 */
+	public static int getTurn(PuzzleState state) {
+		PuzzleGeometry geometry = state.getGeometry();
+		int top = CENTER_SLOTS[PuzzleState.TOP];
+		int front = CENTER_SLOTS[PuzzleState.FRONT];
+
+		for (int rotation = 0; rotation < Rotation.COUNT; rotation++) {
+			if (state.getCubeAt(geometry.getRotatedSlot(rotation, top)) == top
+					&& state.getCubeAt(geometry.getRotatedSlot(rotation, front)) == front) {
+				return rotation;
+			}
+		}
+
+		return Rotation.IDENTITY;
+	}
+
+	/**
+	 * Write the corners and edges into a 3x3 puzzle state, with the centers
+	 * at home
+	 * 
+	 * @param state
+	 *            state of a 3x3 puzzle
+	 */
+	public void get(PuzzleState state) {
+		if (state.getSize() != 3) {
+			throw new IllegalArgumentException("Not a 3x3 puzzle: "
+					+ state.getSize());
+		}
+
+		PuzzleGeometry geometry = state.getGeometry();
+		int[] locations = new int[geometry.getCount() * 3];
+		int[] rotations = new int[geometry.getCount()];
+
+		for (int cube = 0; cube < geometry.getCount(); cube++) {
+			for (int axis = 0; axis < 3; axis++) {
+				locations[cube * 3 + axis] = geometry.getLocation(cube, axis);
+			}
+		}
+
+		for (int i = 0; i < CORNERS; i++) {
+			int corner = cornerPermutation[i];
+			int[] from = CORNER_FACES[corner];
+			int[] to = CORNER_FACES[i];
+			int twist = cornerTwist[i];
+
+			setLocation(geometry, locations, CORNER_SLOTS[corner],
+					CORNER_SLOTS[i]);
+			rotations[CORNER_SLOTS[corner]] = findRotation(from[0],
+					to[twist], from[1], to[(twist + 1) % 3]);
+		}
+
+		for (int i = 0; i < EDGES; i++) {
+			int edge = edgePermutation[i];
+			int[] from = EDGE_FACES[edge];
+			int[] to = EDGE_FACES[i];
+			int flip = edgeFlip[i];
+
+			setLocation(geometry, locations, EDGE_SLOTS[edge], EDGE_SLOTS[i]);
+			rotations[EDGE_SLOTS[edge]] = findRotation(from[0], to[flip],
+					from[1], to[1 - flip]);
+		}
+
+		state.set(locations, rotations);
+	}
+
+	private static void setLocation(PuzzleGeometry geometry, int[] locations,
+			int cube, int slot) {
+		for (int axis = 0; axis < 3; axis++) {
+			locations[cube * 3 + axis] = geometry.getLocation(slot, axis);
+		}
+	}
+
+	/**
+	 * Rotation that turns two faces of a cube onto two other faces
+	 */
+	private static int findRotation(int a, int toA, int b, int toB) {
+		for (int rotation = 0; rotation < Rotation.COUNT; rotation++) {
+			if (PuzzleState.getRotatedFace(rotation, a) == toA
+					&& PuzzleState.getRotatedFace(rotation, b) == toB) {
+				return rotation;
+			}
+		}
+
+		throw new IllegalStateException("No rotation turns " + a + " to "
+				+ toA + " and " + b + " to " + toB);
+	}
+
+	/**
+	 * Put a corner in a corner position
+	 * 
+	 * @param position
+	 *            corner position
+	 * @param corner
+	 *            corner piece
+	 * @param twist
+	 *            0 to 2
+	 */
+	public void setCorner(int position, int corner, int twist) {
+		cornerPermutation[position] = (byte) corner;
+		cornerTwist[position] = (byte) twist;
+	}
+
+	/**
+	 * Put an edge in an edge position
+	 * 
+	 * @param position
+	 *            edge position
+	 * @param edge
+	 *            edge piece
+	 * @param flip
+	 *            0 or 1
+	 */
+	public void setEdge(int position, int edge, int flip) {
+		edgePermutation[position] = (byte) edge;
+		edgeFlip[position] = (byte) flip;
+	}
+
+	/**
+	 * Change the cube as if the moves that make another cube from a solved
+	 * one were made on it
+	 * 
+	 * @param cube
+	 *            cube to apply, may be this one
+	 */
+	public void multiply(CubieCube cube) {
+		byte[] corners = new byte[CORNERS];
+		byte[] twists = new byte[CORNERS];
+		for (int i = 0; i < CORNERS; i++) {
+			int from = cube.cornerPermutation[i];
+			corners[i] = cornerPermutation[from];
+			twists[i] = (byte) ((cornerTwist[from] + cube.cornerTwist[i]) % 3);
+		}
+
+		byte[] edges = new byte[EDGES];
+		byte[] flips = new byte[EDGES];
+		for (int i = 0; i < EDGES; i++) {
+			int from = cube.edgePermutation[i];
+			edges[i] = edgePermutation[from];
+			flips[i] = (byte) (edgeFlip[from] ^ cube.edgeFlip[i]);
+		}
+
+		System.arraycopy(corners, 0, cornerPermutation, 0, CORNERS);
+		System.arraycopy(twists, 0, cornerTwist, 0, CORNERS);
+		System.arraycopy(edges, 0, edgePermutation, 0, EDGES);
+		System.arraycopy(flips, 0, edgeFlip, 0, EDGES);
+	}
+
+	/**
+	 * Set the cube to the one that undoes another
+	 * 
+	 * @param cube
+	 *            cube to invert, not this one
+	 */
+	public void setInverse(CubieCube cube) {
+		for (int i = 0; i < CORNERS; i++) {
+			int corner = cube.cornerPermutation[i];
+			cornerPermutation[corner] = (byte) i;
+			cornerTwist[corner] = (byte) ((3 - cube.cornerTwist[i]) % 3);
+		}
+
+		for (int i = 0; i < EDGES; i++) {
+			int edge = cube.edgePermutation[i];
+			edgePermutation[edge] = (byte) i;
+			edgeFlip[edge] = cube.edgeFlip[i];
+		}
+	}
+
+	/**
+	 * Corner in a corner position
+	 */
+	public int getCorner(int position) {
+		return cornerPermutation[position];
+	}
+
+	/**
+	 * Twist of the corner in a corner position, 0 to 2
+	 */
+	public int getCornerTwist(int position) {
+		return cornerTwist[position];
+	}
+
+	/**
+	 * Edge in an edge position
+	 */
+	public int getEdge(int position) {
+		return edgePermutation[position];
+	}
+
+	/**
+	 * Flip of the edge in an edge position, 0 or 1
+	 */
+	public int getEdgeFlip(int position) {
+		return edgeFlip[position];
+	}
+
+	/**
+	 * Rank of the corner permutation, 0 to CORNER_PERMUTATIONS - 1
+	 */
+	public int getCornerPermutationRank() {
+		return CubieRank.rankPermutation(cornerPermutation, CORNERS);
+	}
+
+	public void setCornerPermutationRank(int rank) {
+		CubieRank.unrankPermutation(rank, cornerPermutation, CORNERS);
+	}
+
+	/**
+	 * Rank of the corner twists, 0 to CORNER_TWISTS - 1
+	 */
+	public int getCornerTwistRank() {
+		return CubieRank.rankOrientation(cornerTwist, CORNERS, 3);
+	}
+
+	public void setCornerTwistRank(int rank) {
+		CubieRank.unrankOrientation(rank, cornerTwist, CORNERS, 3);
+	}
+
+	/**
+	 * Rank of the edge permutation, 0 to EDGE_PERMUTATIONS - 1
+	 */
+	public int getEdgePermutationRank() {
+		return CubieRank.rankPermutation(edgePermutation, EDGES);
+	}
+
+	public void setEdgePermutationRank(int rank) {
+		CubieRank.unrankPermutation(rank, edgePermutation, EDGES);
+	}
+
+	/**
+	 * Rank of the edge flips, 0 to EDGE_FLIPS - 1
+	 */
+	public int getEdgeFlipRank() {
+		return CubieRank.rankOrientation(edgeFlip, EDGES, 2);
+	}
+
+	public void setEdgeFlipRank(int rank) {
+		CubieRank.unrankOrientation(rank, edgeFlip, EDGES, 2);
+	}
+
+	/**
+	 * Check if the cube can be reached by turning layers. Ranks always give
+	 * valid twists and flips, but the corner and edge permutations also have
+	 * to be both even or both odd.
+	 */
+	public boolean isSolvable() {
+		int twist = 0;
+		for (int i = 0; i < CORNERS; i++) {
+			twist += cornerTwist[i];
+		}
+
+		int flip = 0;
+		for (int i = 0; i < EDGES; i++) {
+			flip += edgeFlip[i];
+		}
+
+		return twist % 3 == 0
+				&& flip % 2 == 0
+				&& CubieRank.getParity(cornerPermutation, CORNERS) == CubieRank
+						.getParity(edgePermutation, EDGES);
+	}
+
+	public boolean isSolved() {
+		for (int i = 0; i < CORNERS; i++) {
+			if (cornerPermutation[i] != i || cornerTwist[i] != 0) {
+				return false;
+			}
+		}
+
+		for (int i = 0; i < EDGES; i++) {
+			if (edgePermutation[i] != i || edgeFlip[i] != 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Slot of the cube with stickers on some faces
+	 */
+	private static int getSlot(PuzzleGeometry geometry, int[] faces) {
+		int[] location = { 1, 1, 1 };
+		for (int face : faces) {
+			location[PuzzleState.getFaceAxis(face)] = (PuzzleState
+					.getFaceSign(face) < 0) ? 0 : 2;
+		}
+
+		return geometry.getSlot(location[0], location[1], location[2]);
+	}
+
+	private static int indexOf(int[] faces, int face) {
+		for (int i = 0; i < faces.length; i++) {
+			if (faces[i] == face) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Maps permutations and orientations to dense integer ranks and back, so a
+ * piece of the puzzle state can index a table directly. Permutations are
+ * ranked by their Lehmer code and orientations as numbers in base 2 or 3.
+ * Every method runs in time linear in the number of pieces and creates no
+ * objects.
+ */
+public final class CubieRank {
+
+	/**
+	 * Most pieces in a permutation, enough for the 12 edges of a 3x3
+	 */
+	public static final int MAX_PIECES = 12;
+
+	/**
+	 * Ranks of each 3x3 coordinate
+	 */
+	public static final int CORNER_PERMUTATIONS = 40320;
+	public static final int CORNER_TWISTS = 2187;
+	public static final int EDGE_PERMUTATIONS = 479001600;
+	public static final int EDGE_FLIPS = 2048;
+
+	// Position of the kth set bit of a mask, indexed by mask << 4 | k
+	private static final byte[] SELECT = new byte[(1 << MAX_PIECES) << 4];
+
+	static {
+		for (int mask = 0; mask < 1 << MAX_PIECES; mask++) {
+			for (int bit = 0, k = 0; bit < MAX_PIECES; bit++) {
+				if ((mask & (1 << bit)) != 0) {
+					SELECT[mask << 4 | k++] = (byte) bit;
+				}
+			}
+		}
+	}
+
+	private CubieRank() {
+	}
+
+	/**
+	 * Rank of a permutation, 0 for the identity
+	 * 
+	 * @param permutation
+	 *            piece in each position, 0 to length - 1
+	 * @param length
+	 *            number of pieces, at most MAX_PIECES
+	 * @return 0 to length! - 1
+	 */
+	public static int rankPermutation(byte[] permutation, int length) {
+		int rank = 0;
+		int seen = 0;
+
+		for (int i = 0; i < length; i++) {
+			int piece = permutation[i];
+
+			// Pieces not placed yet that are smaller than this one
+			int digit = piece - Integer.bitCount(seen & ((1 << piece) - 1));
+			seen |= 1 << piece;
+
+			rank = rank * (length - i) + digit;
+		}
+
+		return rank;
+	}
+
+	/**
+	 * Permutation with a rank
+	 * 
+	 * @param rank
+	 *            0 to length! - 1
+	 * @param permutation
+	 *            filled with the piece in each position
+	 * @param length
+	 *            number of pieces, at most MAX_PIECES
+	 */
+	public static void unrankPermutation(int rank, byte[] permutation,
+			int length) {
+		// Lehmer code digits, the last position has only one choice
+		for (int i = length - 1; i >= 0; i--) {
+			permutation[i] = (byte) (rank % (length - i));
+			rank /= length - i;
+		}
+
+		int free = (1 << length) - 1;
+		for (int i = 0; i < length; i++) {
+			int piece = SELECT[free << 4 | permutation[i]];
+			free &= ~(1 << piece);
+			permutation[i] = (byte) piece;
+		}
+	}
+
+	/**
+	 * Rank of the orientations of a set of pieces. The orientations add up to
+	 * a multiple of the base, so the last piece is left out.
+	 * 
+	 * @param orientations
+	 *            orientation of each piece, 0 to base - 1
+	 * @param length
+	 *            number of pieces
+	 * @param base
+	 *            2 for edges, 3 for corners
+	 * @return 0 to base ^ (length - 1) - 1
+	 */
+	public static int rankOrientation(byte[] orientations, int length, int base) {
+		int rank = 0;
+		for (int i = 0; i < length - 1; i++) {
+			rank = rank * base + orientations[i];
+		}
+
+		return rank;
+	}
+
+	/**
+	 * Orientations with a rank, the last piece is set so the orientations add
+	 * up to a multiple of the base
+	 * 
+	 * @param rank
+	 *            0 to base ^ (length - 1) - 1
+	 * @param orientations
+	 *            filled with the orientation of each piece
+	 * @param length
+	 *            number of pieces
+	 * @param base
+	 *            2 for edges, 3 for corners
+	 */
+	public static void unrankOrientation(int rank, byte[] orientations,
+			int length, int base) {
+		int sum = 0;
+		for (int i = length - 2; i >= 0; i--) {
+			orientations[i] = (byte) (rank % base);
+			sum += orientations[i];
+			rank /= base;
+		}
+
+		orientations[length - 1] = (byte) ((base - sum % base) % base);
+	}
+
+	/**
+	 * Parity of a permutation
+	 * 
+	 * @return 0 for an even permutation, 1 for odd
+	 */
+	public static int getParity(byte[] permutation, int length) {
+		int parity = 0;
+		int seen = 0;
+
+		for (int i = length - 1; i >= 0; i--) {
+			int piece = permutation[i];
+
+			// Pieces after this position that are smaller than this one
+			parity += Integer.bitCount(seen & ((1 << piece) - 1));
+			seen |= 1 << piece;
+		}
+
+		return parity & 1;
+	}
+
+}
@@ -0,0 +1,233 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Converts a 3x3 puzzle to and from 54 facelet characters, the format most
+ * external solvers read. The faces are in the order U, R, F, D, L, B and
+ * each face is read left to right, top to bottom as laid out on the usual
+ * unfolded net. Each character names the face whose center has the same
+ * color, so the solved puzzle is
+ * UUUUUUUUURRRRRRRRRFFFFFFFFFDDDDDDDDDLLLLLLLLLBBBBBBBBB. Any six distinct
+ * characters are read, each stands for the face its center is on.
+ * 
+ * The codec works on ASCII bytes at an offset so a buffer of many states can
+ * be read and written without creating any objects.
+ */
+public final class FaceletCodec {
+
+	/**
+	 * Number of facelets
+	 */
+	public static final int LENGTH = 54;
+
+	// Faces in facelet order
+	private static final int U = 0, R = 1, F = 2, D = 3, L = 4, B = 5;
+
+	private static final byte[] FACE_NAMES = { 'U', 'R', 'F', 'D', 'L', 'B' };
+
+	// Facelet of each face's center
+	private static final int[] CENTERS = { 4, 13, 22, 31, 40, 49 };
+
+	// @formatter:off
+
+	// Facelets of each corner position, in the same order as CubieCube
+	private static final int[][] CORNER_FACELETS = {
+			{  8,  9, 20 }, {  6, 18, 38 }, {  0, 36, 47 }, {  2, 45, 11 },
+			{ 29, 26, 15 }, { 27, 44, 24 }, { 33, 53, 42 }, { 35, 17, 51 } };
+
+	private static final int[][] CORNER_COLORS = {
+			{ U, R, F }, { U, F, L }, { U, L, B }, { U, B, R },
+			{ D, F, R }, { D, L, F }, { D, B, L }, { D, R, B } };
+
+	// Facelets of each edge position, in the same order as CubieCube
+	private static final int[][] EDGE_FACELETS = {
+			{  5, 10 }, {  7, 19 }, {  3, 37 }, {  1, 46 },
+			{ 32, 16 }, { 28, 25 }, { 30, 43 }, { 34, 52 },
+			{ 23, 12 }, { 21, 41 }, { 50, 39 }, { 48, 14 } };
+
+	private static final int[][] EDGE_COLORS = {
+			{ U, R }, { U, F }, { U, L }, { U, B },
+			{ D, R }, { D, F }, { D, L }, { D, B },
+			{ F, R }, { F, L }, { B, L }, { B, R } };
+
+	// @formatter:on
+
+	private FaceletCodec() {
+	}
+
+	/**
+	 * Write the facelets of a cube
+	 * 
+	 * @param cube
+	 *            cube to write
+	 * @param facelets
+	 *            buffer to write LENGTH bytes into
+	 * @param offset
+	 *            first byte to write
+	 */
+	public static void encode(CubieCube cube, byte[] facelets, int offset) {
+		for (int face = 0; face < 6; face++) {
+			facelets[offset + CENTERS[face]] = FACE_NAMES[face];
+		}
+
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			int corner = cube.getCorner(i);
+			int twist = cube.getCornerTwist(i);
+
+			for (int n = 0; n < 3; n++) {
+				facelets[offset + CORNER_FACELETS[i][(n + twist) % 3]] = FACE_NAMES[CORNER_COLORS[corner][n]];
+			}
+		}
+
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			int edge = cube.getEdge(i);
+			int flip = cube.getEdgeFlip(i);
+
+			for (int n = 0; n < 2; n++) {
+				facelets[offset + EDGE_FACELETS[i][(n + flip) % 2]] = FACE_NAMES[EDGE_COLORS[edge][n]];
+			}
+		}
+	}
+
+	/**
+	 * Read the facelets of a cube
+	 * 
+	 * @param facelets
+	 *            buffer with LENGTH bytes to read
+	 * @param offset
+	 *            first byte to read
+	 * @param cube
+	 *            set to the cube the facelets describe
+	 * @return false if the facelets are not a cube that can be solved, the
+	 *         cube is left in an unknown state
+	 */
+	public static boolean decode(byte[] facelets, int offset, CubieCube cube) {
+		// Every center has to be a different color
+		for (int a = 0; a < 6; a++) {
+			for (int b = a + 1; b < 6; b++) {
+				if (facelets[offset + CENTERS[a]] == facelets[offset
+						+ CENTERS[b]]) {
+					return false;
+				}
+			}
+		}
+
+		int used = 0;
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			int[] positions = CORNER_FACELETS[i];
+
+			// The twist is where the top or bottom color is
+			int twist = 0;
+			while (twist < 3) {
+				int face = getFace(facelets, offset, positions[twist]);
+				if (face == U || face == D) {
+					break;
+				}
+				twist++;
+			}
+			if (twist == 3) {
+				return false;
+			}
+
+			int a = getFace(facelets, offset, positions[(twist + 1) % 3]);
+			int b = getFace(facelets, offset, positions[(twist + 2) % 3]);
+
+			int corner = 0;
+			while (corner < CubieCube.CORNERS
+					&& (CORNER_COLORS[corner][1] != a || CORNER_COLORS[corner][2] != b)) {
+				corner++;
+			}
+			if (corner == CubieCube.CORNERS
+					|| CORNER_COLORS[corner][0] != getFace(facelets, offset,
+							positions[twist]) || (used & (1 << corner)) != 0) {
+				return false;
+			}
+
+			used |= 1 << corner;
+			cube.setCorner(i, corner, twist);
+		}
+
+		used = 0;
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			int a = getFace(facelets, offset, EDGE_FACELETS[i][0]);
+			int b = getFace(facelets, offset, EDGE_FACELETS[i][1]);
+
+			int edge = 0, flip = 0;
+			while (edge < CubieCube.EDGES) {
+				if (EDGE_COLORS[edge][0] == a && EDGE_COLORS[edge][1] == b) {
+					flip = 0;
+					break;
+				} else if (EDGE_COLORS[edge][0] == b
+						&& EDGE_COLORS[edge][1] == a) {
+					flip = 1;
+					break;
+				}
+				edge++;
+			}
+			if (edge == CubieCube.EDGES || (used & (1 << edge)) != 0) {
+				return false;
+			}
+
+			used |= 1 << edge;
+			cube.setEdge(i, edge, flip);
+		}
+
+		return cube.isSolvable();
+	}
+
+	/**
+	 * Face whose center has the same color as a facelet
+	 * 
+	 * @return U to B, or -1 if no center matches
+	 */
+	private static int getFace(byte[] facelets, int offset, int facelet) {
+		byte color = facelets[offset + facelet];
+		for (int face = 0; face < 6; face++) {
+			if (facelets[offset + CENTERS[face]] == color) {
+				return face;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Facelets of a cube as a string
+	 */
+	public static String toString(CubieCube cube) {
+		byte[] facelets = new byte[LENGTH];
+		encode(cube, facelets, 0);
+
+		char[] characters = new char[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			characters[i] = (char) facelets[i];
+		}
+
+		return new String(characters);
+	}
+
+	/**
+	 * Read a cube from a facelet string
+	 * 
+	 * @param facelets
+	 *            LENGTH characters
+	 * @param cube
+	 *            set to the cube the facelets describe
+	 */
+	public static void fromString(String facelets, CubieCube cube) {
+		if (facelets.length() != LENGTH) {
+			throw new IllegalArgumentException("Expected " + LENGTH
+					+ " facelets: " + facelets);
+		}
+
+		byte[] bytes = new byte[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			bytes[i] = (byte) facelets.charAt(i);
+		}
+
+		if (!decode(bytes, 0, cube)) {
+			throw new IllegalArgumentException("Not a solvable cube: "
+					+ facelets);
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.fivevsthree.puzzlecube.Models;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads cubes from a stream with one facelet string on each line, see
+ * FaceletCodec. The stream is read in blocks into one buffer that is reused
+ * for the whole stream, so reading millions of cubes creates no objects after
+ * the reader. Blank lines are skipped.
+ */
+public class FaceletReader {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final InputStream input;
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position, limit;
+
+	// Facelets of the current line
+	private final byte[] line = new byte[FaceletCodec.LENGTH];
+
+	private long lineNumber;
+
+	/**
+	 * Create a reader. The stream is not buffered again, so there is no need
+	 * to wrap it.
+	 * 
+	 * @param input
+	 *            stream of facelet lines
+	 */
+	public FaceletReader(InputStream input) {
+		this.input = input;
+	}
+
+	/**
+	 * Read the next cube
+	 * 
+	 * @param cube
+	 *            set to the cube on the next line
+	 * @return false at the end of the stream
+	 * @throws IOException
+	 *             if the stream fails or a line is not a solvable cube
+	 */
+	public boolean next(CubieCube cube) throws IOException {
+		int length;
+		do {
+			length = readLine();
+			if (length < 0) {
+				return false;
+			}
+		} while (length == 0);
+
+		if (length != FaceletCodec.LENGTH
+				|| !FaceletCodec.decode(line, 0, cube)) {
+			throw new IOException("Invalid facelets on line " + lineNumber);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Number of the line that was read last, starting from 1
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * Read a line into the line buffer
+	 * 
+	 * @return number of characters on the line, which may be more than fit in
+	 *         the line buffer, or -1 at the end of the stream
+	 */
+	private int readLine() throws IOException {
+		int length = 0;
+		boolean isEmpty = true;
+
+		while (true) {
+			if (position == limit) {
+				limit = input.read(buffer, 0, BUFFER_SIZE);
+				position = 0;
+
+				if (limit <= 0) {
+					limit = 0;
+					if (isEmpty) {
+						return -1;
+					}
+					break;
+				}
+			}
+
+			byte b = buffer[position++];
+			isEmpty = false;
+
+			if (b == '\n') {
+				break;
+			} else if (b != '\r' && b != ' ' && b != '\t') {
+				if (length < FaceletCodec.LENGTH) {
+					line[length] = b;
+				}
+				length++;
+			}
+		}
+
+		lineNumber++;
+		return length;
+	}
+
+	public void close() throws IOException {
+		input.close();
+	}
+
+}
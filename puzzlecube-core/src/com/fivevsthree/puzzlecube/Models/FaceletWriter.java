@@ -0,0 +1,60 @@
+package com.fivevsthree.puzzlecube.Models;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes cubes to a stream as one facelet string on each line, see
+ * FaceletCodec. Lines are collected in one reused buffer and written in
+ * blocks.
+ */
+public class FaceletWriter {
+
+	// Facelets and a new line
+	private static final int LINE_LENGTH = FaceletCodec.LENGTH + 1;
+
+	private static final int BUFFER_LINES = 1024;
+
+	private final OutputStream output;
+
+	private final byte[] buffer = new byte[LINE_LENGTH * BUFFER_LINES];
+	private int position;
+
+	/**
+	 * Create a writer
+	 * 
+	 * @param output
+	 *            stream to write facelet lines to
+	 */
+	public FaceletWriter(OutputStream output) {
+		this.output = output;
+	}
+
+	/**
+	 * Write a cube on its own line
+	 */
+	public void write(CubieCube cube) throws IOException {
+		if (position == buffer.length) {
+			flush();
+		}
+
+		FaceletCodec.encode(cube, buffer, position);
+		buffer[position + FaceletCodec.LENGTH] = '\n';
+		position += LINE_LENGTH;
+	}
+
+	public void flush() throws IOException {
+		output.write(buffer, 0, position);
+		output.flush();
+		position = 0;
+	}
+
+	/**
+	 * Write any lines left in the buffer and close the stream
+	 */
+	public void close() throws IOException {
+		flush();
+		output.close();
+	}
+
+}
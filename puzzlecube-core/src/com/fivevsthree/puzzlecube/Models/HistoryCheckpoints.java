@@ -0,0 +1,202 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Saved states along an undo history, so going to any node of a long history
+ * does not have to replay it from the start. A checkpoint is kept for every
+ * node whose depth is a multiple of the interval, on every branch, so any
+ * node is at most interval - 1 moves below one. Each checkpoint is three
+ * bytes a cube, see PuzzleState.save.
+ * 
+ * The checkpoints are built from the state at the current node the first
+ * time they are needed, then kept up to date as moves are added. They have
+ * to be invalidated when the state changes without the history or the
+ * history is replaced.
+ */
+public class HistoryCheckpoints {
+
+	public static final int DEFAULT_INTERVAL = 256;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int interval;
+
+	// Saved state of each checkpoint node, null for the other nodes
+	private byte[][] states = new byte[INITIAL_CAPACITY][];
+
+	private boolean isBuilt;
+
+	// State used while building, the size of the last puzzle
+	private PuzzleState scratch;
+
+	// Moves from a checkpoint down to a node, reused between seeks
+	private byte[] path;
+
+	public HistoryCheckpoints() {
+		this(DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Create an empty set of checkpoints
+	 * 
+	 * @param interval
+	 *            number of moves between checkpoints on the same branch
+	 */
+	public HistoryCheckpoints(int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Invalid interval " + interval);
+		}
+
+		this.interval = interval;
+		path = new byte[interval];
+	}
+
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Forget every checkpoint. They are built again the next time they are
+	 * needed.
+	 */
+	public void invalidate() {
+		for (int i = 0; i < states.length; i++) {
+			states[i] = null;
+		}
+
+		isBuilt = false;
+	}
+
+	/**
+	 * Save a checkpoint for the current node of a history if it needs one.
+	 * Call after each move added to the history.
+	 * 
+	 * @param history
+	 *            history the checkpoints are for
+	 * @param state
+	 *            state at the current node
+	 */
+	public void update(MoveTree history, PuzzleState state) {
+		if (!isBuilt) {
+			return;
+		}
+
+		ensureCapacity(history.getCount());
+
+		int node = history.getCurrent();
+		if (history.getDepth(node) % interval == 0 && states[node] == null) {
+			states[node] = new byte[state.getSavedLength()];
+			state.save(states[node]);
+		}
+	}
+
+	/**
+	 * Move a history to another node and set the state to match. When the
+	 * path between the nodes is longer than the way down from the closest
+	 * checkpoint above the target, the checkpoint is restored instead of
+	 * applying the path.
+	 * 
+	 * @param history
+	 *            history the checkpoints are for
+	 * @param target
+	 *            node to go to
+	 * @param state
+	 *            state at the current node, set to the state at the target
+	 * @param moves
+	 *            cleared and filled with the moves between the two nodes, as
+	 *            MoveTree.jumpTo does, even when they were not applied
+	 */
+	public void seek(MoveTree history, int target, PuzzleState state,
+			MoveLog moves) {
+		if (!isBuilt) {
+			build(history, state);
+		}
+
+		history.jumpTo(target, moves);
+
+		// Find the closest checkpoint at or above the target
+		int length = 0;
+		int node = target;
+		while (states[node] == null) {
+			if (length == path.length) {
+				path = copyOf(path, path.length * 2);
+			}
+
+			path[length++] = (byte) history.getMove(node);
+			node = history.getParent(node);
+		}
+
+		if (length < moves.size()) {
+			state.restore(states[node]);
+			for (int i = length - 1; i >= 0; i--) {
+				state.apply(path[i]);
+			}
+		} else {
+			for (int i = 0; i < moves.size(); i++) {
+				state.apply(moves.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Save a checkpoint for every node that needs one, from the state at the
+	 * current node. Nodes are created after their parents, so each
+	 * checkpoint is built from the one above it in a single pass.
+	 */
+	private void build(MoveTree history, PuzzleState state) {
+		invalidate();
+		ensureCapacity(history.getCount());
+
+		if (scratch == null || scratch.getSize() != state.getSize()) {
+			scratch = new PuzzleState(state.getSize());
+		}
+
+		// Undo back to the root
+		scratch.set(state);
+		int current = history.getCurrent();
+		while (current != MoveTree.ROOT) {
+			scratch.apply(Move.inverse(history.getMove(current)));
+			current = history.getParent(current);
+		}
+
+		states[MoveTree.ROOT] = new byte[state.getSavedLength()];
+		scratch.save(states[MoveTree.ROOT]);
+
+		for (int node = 1; node < history.getCount(); node++) {
+			if (history.getDepth(node) % interval != 0) {
+				continue;
+			}
+
+			int length = 0;
+			int above = node;
+			for (int i = 0; i < interval; i++) {
+				path[length++] = (byte) history.getMove(above);
+				above = history.getParent(above);
+			}
+
+			scratch.restore(states[above]);
+			for (int i = length - 1; i >= 0; i--) {
+				scratch.apply(path[i]);
+			}
+
+			states[node] = new byte[state.getSavedLength()];
+			scratch.save(states[node]);
+		}
+
+		isBuilt = true;
+	}
+
+	private void ensureCapacity(int count) {
+		if (states.length < count) {
+			byte[][] grown = new byte[Math.max(count, states.length * 2)][];
+			System.arraycopy(states, 0, grown, 0, states.length);
+			states = grown;
+		}
+	}
+
+	private static byte[] copyOf(byte[] array, int length) {
+		byte[] result = new byte[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Packs a layer rotation into a single move code so moves can be stored and
+ * looked up in tables without creating any objects. A move is a quarter turn
+ * of one layer around the x, y or z axis. Layers are numbered from the
+ * negative end of the axis, so on a 3x3 puzzle layer 0 is at depth -1 and
+ * layer 2 is at depth 1.
+ */
+public final class Move {
+
+	public static final int X = 0;
+	public static final int Y = 1;
+	public static final int Z = 2;
+
+	/**
+	 * Counter clockwise when looking down the positive axis, the same as
+	 * rotating a layer by 90 degrees around a positive axis
+	 */
+	public static final int POSITIVE = 0;
+
+	/**
+	 * Clockwise when looking down the positive axis
+	 */
+	public static final int NEGATIVE = 1;
+
+	private Move() {
+	}
+
+	/**
+	 * Create a move code
+	 * 
+	 * @param axis
+	 *            axis the layer rotates around
+	 * @param layer
+	 *            layer index along the axis
+	 * @param direction
+	 *            POSITIVE or NEGATIVE
+	 * @return move code
+	 */
+	public static int encode(int axis, int layer, int direction) {
+		return (layer * 3 + axis) * 2 + direction;
+	}
+
+	public static int getAxis(int move) {
+		return (move >> 1) % 3;
+	}
+
+	public static int getLayer(int move) {
+		return (move >> 1) / 3;
+	}
+
+	public static int getDirection(int move) {
+		return move & 1;
+	}
+
+	/**
+	 * The move that undoes a move
+	 * 
+	 * @param move
+	 *            move code
+	 * @return move code turning the same layer the other way
+	 */
+	public static int inverse(int move) {
+		return move ^ 1;
+	}
+
+}
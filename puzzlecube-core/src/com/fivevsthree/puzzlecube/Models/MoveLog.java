@@ -0,0 +1,102 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Growable history of move codes, one byte for each move. Every move code of
+ * the largest puzzle fits in a byte, so a long session costs a byte a move
+ * instead of a boxed object. Undoing a move is applying its inverse, see
+ * Move.inverse.
+ */
+public class MoveLog {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private byte[] moves;
+	private int size;
+
+	public MoveLog() {
+		moves = new byte[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Add a move to the end of the log
+	 * 
+	 * @param move
+	 *            move code, see Move
+	 */
+	public void add(int move) {
+		if (size == moves.length) {
+			byte[] grown = new byte[moves.length * 2];
+			System.arraycopy(moves, 0, grown, 0, size);
+			moves = grown;
+		}
+
+		moves[size++] = (byte) move;
+	}
+
+	/**
+	 * Remove the last move from the log
+	 * 
+	 * @return move code of the removed move
+	 */
+	public int removeLast() {
+		if (size == 0) {
+			throw new IllegalStateException("The move log is empty");
+		}
+
+		return moves[--size];
+	}
+
+	/**
+	 * Move code at a position in the log
+	 * 
+	 * @param index
+	 *            0 for the first move
+	 * @return move code
+	 */
+	public int get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+		}
+
+		return moves[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Copy of the move codes in the order they were added, for saving or
+	 * replaying
+	 */
+	public byte[] toArray() {
+		byte[] result = new byte[size];
+		System.arraycopy(moves, 0, result, 0, size);
+		return result;
+	}
+
+	/**
+	 * Replace the log with saved move codes
+	 * 
+	 * @param saved
+	 *            move codes in the order they were added
+	 */
+	public void set(byte[] saved) {
+		if (saved.length > moves.length) {
+			moves = new byte[Math.max(saved.length, moves.length * 2)];
+		}
+
+		System.arraycopy(saved, 0, moves, 0, saved.length);
+		size = saved.length;
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Shortens a move sequence as the moves arrive. Turns of the same layer in a
+ * row are folded into one turn, and turns that add up to a full rotation
+ * cancel out, so R R is one half turn and R R' is nothing. Each move only
+ * looks at the last turn, so adding a move takes constant time.
+ * 
+ * The folded sequence is counted in three turn metrics. A turn of an inner
+ * layer is the same as turning the two outer blocks on either side of it.
+ * <ul>
+ * <li>Half turn metric: any turn of an outer layer is 1, an inner layer is 2</li>
+ * <li>Quarter turn metric: a half turn counts as 2 quarter turns, an inner
+ * layer is twice as many</li>
+ * <li>Slice turn metric: any turn of any layer is 1</li>
+ * </ul>
+ */
+public class MoveNormalizer {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int size;
+
+	// Folded turns, each one is move code / 2 * 4 + quarter turns from 1 to 3
+	private byte[] turns;
+	private int length;
+
+	private long halfTurns, quarterTurns, sliceTurns;
+
+	/**
+	 * Create an empty sequence
+	 * 
+	 * @param size
+	 *            number of cubes along each edge of the puzzle
+	 */
+	public MoveNormalizer(int size) {
+		this.size = size;
+		turns = new byte[INITIAL_CAPACITY];
+	}
+
+	public void clear() {
+		length = 0;
+		halfTurns = quarterTurns = sliceTurns = 0;
+	}
+
+	/**
+	 * Add a move to the end of the sequence
+	 * 
+	 * @param move
+	 *            move code, see Move
+	 */
+	public void add(int move) {
+		int layer = move >> 1;
+		int amount = (Move.getDirection(move) == Move.POSITIVE) ? 1 : 3;
+
+		if (length > 0 && getLayer(length - 1) == layer) {
+			int last = getAmount(length - 1);
+			count(layer, last, -1);
+
+			amount = (last + amount) & 3;
+			if (amount == 0) {
+				length--;
+				return;
+			}
+
+			turns[length - 1] = (byte) (layer << 2 | amount);
+		} else {
+			if (length == turns.length) {
+				byte[] grown = new byte[turns.length * 2];
+				System.arraycopy(turns, 0, grown, 0, length);
+				turns = grown;
+			}
+
+			turns[length++] = (byte) (layer << 2 | amount);
+		}
+
+		count(layer, amount, 1);
+	}
+
+	/**
+	 * Add or remove one folded turn from the metrics
+	 */
+	private void count(int layer, int amount, int sign) {
+		int index = layer / 3;
+		int blocks = (index == 0 || index == size - 1) ? 1 : 2;
+		int quarters = (amount == 2) ? 2 : 1;
+
+		halfTurns += sign * blocks;
+		quarterTurns += sign * blocks * quarters;
+		sliceTurns += sign;
+	}
+
+	private int getLayer(int i) {
+		return (turns[i] & 0xff) >> 2;
+	}
+
+	private int getAmount(int i) {
+		return turns[i] & 3;
+	}
+
+	/**
+	 * Number of turns left after folding
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Move code of a folded turn. A half turn is the positive quarter turn
+	 * done twice.
+	 * 
+	 * @param i
+	 *            0 for the first turn
+	 * @return move code, see Move
+	 */
+	public int getMove(int i) {
+		return getLayer(i) << 1
+				| ((getAmount(i) == 3) ? Move.NEGATIVE : Move.POSITIVE);
+	}
+
+	/**
+	 * Quarter turns in the direction of getMove, 1 or 2
+	 */
+	public int getQuarterTurns(int i) {
+		return (getAmount(i) == 2) ? 2 : 1;
+	}
+
+	public long getHalfTurnCount() {
+		return halfTurns;
+	}
+
+	public long getQuarterTurnCount() {
+		return quarterTurns;
+	}
+
+	public long getSliceTurnCount() {
+		return sliceTurns;
+	}
+
+	/**
+	 * Copy of the folded turns, for saving
+	 */
+	public byte[] toArray() {
+		byte[] result = new byte[length];
+		System.arraycopy(turns, 0, result, 0, length);
+		return result;
+	}
+
+	/**
+	 * Replace the sequence with saved turns and count them again
+	 * 
+	 * @param saved
+	 *            folded turns from toArray
+	 */
+	public void set(byte[] saved) {
+		clear();
+
+		for (byte turn : saved) {
+			int amount = turn & 3;
+			int move = ((turn & 0xff) >> 2) << 1;
+
+			if (amount == 3) {
+				add(move | Move.NEGATIVE);
+			} else {
+				for (int i = 0; i < amount; i++) {
+					add(move | Move.POSITIVE);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,319 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Undo history that keeps every branch. Each node is one move, stored as the
+ * move code and the index of its parent, so moves after an undo start a new
+ * branch instead of throwing the old one away. Node 0 is the start of the
+ * history and has no move.
+ * 
+ * Moving between two nodes only applies the moves up to their closest common
+ * ancestor and back down, never the whole history.
+ */
+public class MoveTree {
+
+	public static final int ROOT = 0;
+
+	public static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	// Move from the parent to each node
+	private byte[] moves;
+
+	private int[] parents;
+
+	// Links to find the children of a node without searching every node
+	private int[] firstChildren, nextSiblings;
+
+	// Child that redo goes to, the last one visited
+	private int[] redoChildren;
+
+	// Number of moves from the root
+	private int[] depths;
+
+	private int count;
+	private int current;
+
+	// Nodes on the way down to a target, reused between jumps
+	private int[] path;
+
+	public MoveTree() {
+		moves = new byte[INITIAL_CAPACITY];
+		parents = new int[INITIAL_CAPACITY];
+		firstChildren = new int[INITIAL_CAPACITY];
+		nextSiblings = new int[INITIAL_CAPACITY];
+		redoChildren = new int[INITIAL_CAPACITY];
+		depths = new int[INITIAL_CAPACITY];
+		path = new int[INITIAL_CAPACITY];
+
+		clear();
+	}
+
+	/**
+	 * Remove every node except the root
+	 */
+	public void clear() {
+		count = 0;
+		current = ROOT;
+		createNode(NONE, 0);
+	}
+
+	/**
+	 * Record a move made from the current node. If the current node already
+	 * has a child with the same move, that branch is reused.
+	 * 
+	 * @param move
+	 *            move code, see Move
+	 * @return node the history is now at
+	 */
+	public int add(int move) {
+		int child = firstChildren[current];
+		while (child != NONE && moves[child] != move) {
+			child = nextSiblings[child];
+		}
+
+		if (child == NONE) {
+			child = createNode(current, move);
+		}
+
+		redoChildren[current] = child;
+		current = child;
+
+		return current;
+	}
+
+	private int createNode(int parent, int move) {
+		if (count == moves.length) {
+			grow(moves.length * 2);
+		}
+
+		int node = count++;
+		moves[node] = (byte) move;
+		parents[node] = parent;
+		firstChildren[node] = NONE;
+		nextSiblings[node] = NONE;
+		redoChildren[node] = NONE;
+		depths[node] = 0;
+
+		if (parent != NONE) {
+			nextSiblings[node] = firstChildren[parent];
+			firstChildren[parent] = node;
+			depths[node] = depths[parent] + 1;
+		}
+
+		return node;
+	}
+
+	private void grow(int capacity) {
+		moves = copyOf(moves, capacity);
+		parents = copyOf(parents, capacity);
+		firstChildren = copyOf(firstChildren, capacity);
+		nextSiblings = copyOf(nextSiblings, capacity);
+		redoChildren = copyOf(redoChildren, capacity);
+		depths = copyOf(depths, capacity);
+	}
+
+	private static byte[] copyOf(byte[] array, int length) {
+		byte[] result = new byte[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] result = new int[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	public boolean canUndo() {
+		return current != ROOT;
+	}
+
+	/**
+	 * Step back to the parent of the current node
+	 * 
+	 * @return move code to apply, the inverse of the current node's move
+	 */
+	public int undo() {
+		if (!canUndo()) {
+			throw new IllegalStateException("Nothing to undo");
+		}
+
+		int move = Move.inverse(moves[current]);
+		redoChildren[parents[current]] = current;
+		current = parents[current];
+
+		return move;
+	}
+
+	public boolean canRedo() {
+		return redoChildren[current] != NONE;
+	}
+
+	/**
+	 * Step forward to the child of the current node that was visited last
+	 * 
+	 * @return move code to apply
+	 */
+	public int redo() {
+		if (!canRedo()) {
+			throw new IllegalStateException("Nothing to redo");
+		}
+
+		current = redoChildren[current];
+
+		return moves[current];
+	}
+
+	/**
+	 * Move the history to another node
+	 * 
+	 * @param target
+	 *            node to go to
+	 * @param moves
+	 *            cleared and filled with the move codes to apply, in order
+	 */
+	public void jumpTo(int target, MoveLog moves) {
+		if (target < 0 || target >= count) {
+			throw new IndexOutOfBoundsException("Node: " + target + ", Count: "
+					+ count);
+		}
+
+		moves.clear();
+
+		int up = current, down = target;
+
+		// Walk up from the current node, undoing each move
+		while (depths[up] > depths[down]) {
+			moves.add(Move.inverse(this.moves[up]));
+			redoChildren[parents[up]] = up;
+			up = parents[up];
+		}
+
+		// Remember the way down from the target, it is applied in reverse
+		if (path.length < depths[target] + 1) {
+			path = new int[Math.max(depths[target] + 1, path.length * 2)];
+		}
+
+		int length = 0;
+		while (depths[down] > depths[up]) {
+			path[length++] = down;
+			down = parents[down];
+		}
+
+		while (up != down) {
+			moves.add(Move.inverse(this.moves[up]));
+			redoChildren[parents[up]] = up;
+			up = parents[up];
+
+			path[length++] = down;
+			down = parents[down];
+		}
+
+		// Walk down to the target, so redo follows this branch again
+		for (int i = length - 1; i >= 0; i--) {
+			moves.add(this.moves[path[i]]);
+			redoChildren[parents[path[i]]] = path[i];
+		}
+
+		current = target;
+	}
+
+	/**
+	 * Node the puzzle is at
+	 */
+	public int getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Number of nodes, including the root
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Parent of a node
+	 * 
+	 * @return node index, NONE for the root
+	 */
+	public int getParent(int node) {
+		return parents[node];
+	}
+
+	/**
+	 * Move from the parent of a node to the node
+	 * 
+	 * @return move code, see Move
+	 */
+	public int getMove(int node) {
+		return moves[node];
+	}
+
+	/**
+	 * Number of moves between the root and a node
+	 */
+	public int getDepth(int node) {
+		return depths[node];
+	}
+
+	/**
+	 * Copy of the move of each node, for saving
+	 */
+	public byte[] getMoves() {
+		byte[] result = new byte[count];
+		System.arraycopy(moves, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Copy of the parent of each node, for saving
+	 */
+	public int[] getParents() {
+		int[] result = new int[count];
+		System.arraycopy(parents, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Replace the tree with a saved one. Every parent must come before its
+	 * children, which is how nodes are created.
+	 * 
+	 * @param moves
+	 *            move of each node
+	 * @param parents
+	 *            parent of each node, NONE for the root
+	 * @param current
+	 *            node the puzzle is at
+	 */
+	public void set(byte[] moves, int[] parents, int current) {
+		if (moves.length == 0 || moves.length != parents.length
+				|| parents[ROOT] != NONE || current < 0
+				|| current >= moves.length) {
+			throw new IllegalArgumentException("Invalid move tree");
+		}
+
+		for (int node = 1; node < parents.length; node++) {
+			if (parents[node] < 0 || parents[node] >= node) {
+				throw new IllegalArgumentException("Invalid move tree");
+			}
+		}
+
+		if (this.moves.length < moves.length) {
+			grow(moves.length);
+		}
+
+		count = 0;
+		for (int node = 0; node < moves.length; node++) {
+			createNode(parents[node], moves[node]);
+		}
+
+		// Redo from any node on the way to the current one leads back to it
+		this.current = current;
+		for (int node = current; node != ROOT; node = parents[node]) {
+			redoChildren[parents[node]] = node;
+		}
+	}
+
+}
@@ -0,0 +1,293 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Compiles algorithms written in Singmaster notation into move codes, so an
+ * algorithm is parsed once and can then be applied any number of times with
+ * PuzzleState.apply or Puzzle.apply. Every quarter turn of every layer
+ * becomes one move code.
+ * 
+ * The notation understood is:
+ * <ul>
+ * <li>U, D, R, L, F, B turn the outer layer of a face clockwise, as seen
+ * looking at that face</li>
+ * <li>Rw or r turn the outer two layers, 3Rw turns the outer three</li>
+ * <li>2R turns only the second layer from the face</li>
+ * <li>M, E, S turn the middle layer of a puzzle with an odd size, in the same
+ * direction as L, D and F</li>
+ * <li>x, y, z turn the whole puzzle in the same direction as R, U and F</li>
+ * <li>' turns counter clockwise and a number repeats a turn, such as R' or U2</li>
+ * <li>A repeat count of 0 leaves the puzzle as it is, a layer count of 0 is
+ * an error</li>
+ * <li>(R U R' U')3 repeats a group, and (R U)' undoes it</li>
+ * </ul>
+ * Spaces are optional.
+ */
+public final class Notation {
+
+	private final String text;
+	private final int size;
+	private int position;
+
+	private Notation(String text, int size) {
+		this.text = text;
+		this.size = size;
+	}
+
+	/**
+	 * Compile an algorithm
+	 * 
+	 * @param algorithm
+	 *            moves in Singmaster notation
+	 * @param size
+	 *            number of cubes along each edge of the puzzle
+	 * @return one move code for each quarter turn of a layer, see Move
+	 * @throws IllegalArgumentException
+	 *             if the algorithm can not be read or does not fit the size
+	 */
+	public static byte[] compile(String algorithm, int size) {
+		Notation notation = new Notation(algorithm, size);
+		MoveLog moves = new MoveLog();
+
+		notation.parseSequence(moves);
+		if (notation.position < algorithm.length()) {
+			throw notation.error("Unexpected ')'");
+		}
+
+		return moves.toArray();
+	}
+
+	/**
+	 * Parse moves until the end of the text or a closing parenthesis
+	 */
+	private void parseSequence(MoveLog moves) {
+		while (true) {
+			skipSpaces();
+			if (position == text.length() || text.charAt(position) == ')') {
+				return;
+			}
+
+			if (text.charAt(position) == '(') {
+				position++;
+				MoveLog group = new MoveLog();
+				parseSequence(group);
+
+				if (position == text.length()) {
+					throw error("Missing ')'");
+				}
+				position++;
+
+				int turns = parseSuffix();
+				for (int i = 0; i < Math.abs(turns); i++) {
+					for (int j = 0; j < group.size(); j++) {
+						if (turns > 0) {
+							moves.add(group.get(j));
+						} else {
+							moves.add(Move.inverse(group.get(group.size() - 1
+									- j)));
+						}
+					}
+				}
+			} else {
+				parseTurn(moves);
+			}
+		}
+	}
+
+	/**
+	 * Parse one face, slice or whole puzzle turn
+	 */
+	private void parseTurn(MoveLog moves) {
+		int start = position;
+		int number = parseNumber();
+
+		if (position == text.length()) {
+			throw error("Expected a move");
+		}
+
+		char letter = text.charAt(position++);
+		boolean isWide = Character.isLowerCase(letter)
+				&& "udrlfb".indexOf(letter) >= 0;
+		if (position < text.length() && text.charAt(position) == 'w') {
+			isWide = true;
+			position++;
+		}
+
+		int axis, direction, first, last;
+
+		switch (Character.toUpperCase(letter)) {
+		case 'R':
+			axis = Move.X;
+			direction = Move.NEGATIVE;
+			break;
+		case 'L':
+			axis = Move.X;
+			direction = Move.POSITIVE;
+			break;
+		case 'U':
+			axis = Move.Y;
+			direction = Move.NEGATIVE;
+			break;
+		case 'D':
+			axis = Move.Y;
+			direction = Move.POSITIVE;
+			break;
+		case 'F':
+			axis = Move.Z;
+			direction = Move.NEGATIVE;
+			break;
+		case 'B':
+			axis = Move.Z;
+			direction = Move.POSITIVE;
+			break;
+		default:
+			axis = -1;
+			direction = Move.POSITIVE;
+		}
+
+		if (axis >= 0) {
+			if (number == 0) {
+				position = start;
+				throw error("Layer count must be at least 1");
+			}
+
+			// Layers counted from the face, 1 is the outer layer
+			int from = 1, to = 1;
+			if (isWide) {
+				to = (number > 0) ? number : 2;
+			} else if (number > 0) {
+				from = to = number;
+			}
+
+			if (to > size) {
+				position = start;
+				throw error("Too many layers for a " + size + "x" + size
+						+ " puzzle");
+			}
+
+			// R, U and F are on the positive end of their axis and turn the
+			// negative way, their layers count down from size - 1
+			boolean isPositiveFace = (direction == Move.NEGATIVE);
+			first = isPositiveFace ? size - to : from - 1;
+			last = isPositiveFace ? size - from : to - 1;
+		} else {
+			if (number >= 0 || isWide) {
+				position = start;
+				throw error("Unexpected layer count");
+			}
+
+			switch (letter) {
+			case 'M':
+				axis = Move.X;
+				direction = Move.POSITIVE;
+				break;
+			case 'E':
+				axis = Move.Y;
+				direction = Move.POSITIVE;
+				break;
+			case 'S':
+				axis = Move.Z;
+				direction = Move.NEGATIVE;
+				break;
+			case 'x':
+				axis = Move.X;
+				direction = Move.NEGATIVE;
+				break;
+			case 'y':
+				axis = Move.Y;
+				direction = Move.NEGATIVE;
+				break;
+			case 'z':
+				axis = Move.Z;
+				direction = Move.NEGATIVE;
+				break;
+			default:
+				position = start;
+				throw error("Unknown move '" + letter + "'");
+			}
+
+			if (Character.isLowerCase(letter)) {
+				first = 0;
+				last = size - 1;
+			} else if (size % 2 == 1) {
+				first = last = size / 2;
+			} else {
+				position = start;
+				throw error("No middle layer on a " + size + "x" + size
+						+ " puzzle");
+			}
+		}
+
+		int turns = parseSuffix();
+		if (turns < 0) {
+			direction ^= 1;
+		}
+
+		// Four quarter turns of a layer do nothing
+		for (int i = 0; i < Math.abs(turns) % 4; i++) {
+			for (int layer = first; layer <= last; layer++) {
+				moves.add(Move.encode(axis, layer, direction));
+			}
+		}
+	}
+
+	/**
+	 * Parse a repeat count and prime after a move or group
+	 * 
+	 * @return number of times to repeat, negative when primed
+	 */
+	private int parseSuffix() {
+		int turns = 1;
+		boolean isPrime = false;
+
+		if (position < text.length() && text.charAt(position) == '\'') {
+			isPrime = true;
+			position++;
+		}
+
+		int number = parseNumber();
+		if (number >= 0) {
+			turns = number;
+		}
+
+		if (!isPrime && position < text.length()
+				&& text.charAt(position) == '\'') {
+			isPrime = true;
+			position++;
+		}
+
+		return isPrime ? -turns : turns;
+	}
+
+	/**
+	 * Parse a decimal number
+	 * 
+	 * @return the number, or -1 if there are no digits
+	 */
+	private int parseNumber() {
+		int number = -1;
+		while (position < text.length()
+				&& Character.isDigit(text.charAt(position))) {
+			number = Math.max(number, 0) * 10
+					+ (text.charAt(position++) - '0');
+
+			if (number > 1000) {
+				throw error("Number too large");
+			}
+		}
+
+		return number;
+	}
+
+	private void skipSpaces() {
+		while (position < text.length()
+				&& Character.isWhitespace(text.charAt(position))) {
+			position++;
+		}
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at " + position
+				+ " in \"" + text + "\"");
+	}
+
+}
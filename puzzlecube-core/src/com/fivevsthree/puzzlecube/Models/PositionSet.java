@@ -0,0 +1,102 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Set of puzzle state hashes, see PuzzleState.getHash. The hashes are kept
+ * in an open addressed long array, so adding one does not create an object.
+ */
+public class PositionSet {
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	// 0 marks an empty entry, so a hash of 0 is tracked on its own
+	private long[] hashes;
+	private boolean hasZero;
+	private int size;
+
+	public PositionSet() {
+		hashes = new long[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Add a hash to the set
+	 * 
+	 * @param hash
+	 *            state hash
+	 * @return true if the hash was not already in the set
+	 */
+	public boolean add(long hash) {
+		if (hash == 0) {
+			if (hasZero) {
+				return false;
+			}
+
+			hasZero = true;
+			size++;
+			return true;
+		}
+
+		// Keep the array at most half full
+		if ((size + 1) * 2 > hashes.length) {
+			grow();
+		}
+
+		if (!insert(hashes, hash)) {
+			return false;
+		}
+
+		size++;
+		return true;
+	}
+
+	public boolean contains(long hash) {
+		if (hash == 0) {
+			return hasZero;
+		}
+
+		int mask = hashes.length - 1;
+		for (int i = (int) (hash ^ (hash >>> 32)) & mask;; i = (i + 1) & mask) {
+			if (hashes[i] == hash) {
+				return true;
+			} else if (hashes[i] == 0) {
+				return false;
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		for (int i = 0; i < hashes.length; i++) {
+			hashes[i] = 0;
+		}
+
+		hasZero = false;
+		size = 0;
+	}
+
+	private void grow() {
+		long[] grown = new long[hashes.length * 2];
+		for (long hash : hashes) {
+			if (hash != 0) {
+				insert(grown, hash);
+			}
+		}
+
+		hashes = grown;
+	}
+
+	private static boolean insert(long[] hashes, long hash) {
+		int mask = hashes.length - 1;
+		for (int i = (int) (hash ^ (hash >>> 32)) & mask;; i = (i + 1) & mask) {
+			if (hashes[i] == hash) {
+				return false;
+			} else if (hashes[i] == 0) {
+				hashes[i] = hash;
+				return true;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,311 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * Lookup tables for one puzzle size. Only the cubes on the surface of the
+ * puzzle are numbered, so every table grows with the surface area of the
+ * puzzle instead of its volume. Slots are numbered in the order the cubes are
+ * created, looping over x, then y, then z, and each cube has the same index
+ * as the slot it starts in. Tables are built once per size and shared.
+ */
+public final class PuzzleGeometry {
+
+	public static final int MIN_SIZE = 2;
+	public static final int MAX_SIZE = 21;
+
+	private static final PuzzleGeometry[] GEOMETRIES = new PuzzleGeometry[MAX_SIZE + 1];
+
+	private final int size;
+	private final int count;
+
+	// Layer index of each slot along x, y and z
+	private final byte[] homes;
+
+	// Slot at each layer index, -1 inside the puzzle
+	private final short[] slots;
+
+	// Slots in each layer, indexed by move code / 2
+	private final int[][] layers;
+
+	// 4-cycles of slots for a positive quarter turn of each layer, the cube in
+	// cycle[i] moves to cycle[i + 1]
+	private final int[][] cycles;
+
+	// Slots that turn in place, the center of an outer layer with an odd size
+	private final int[][] fixed;
+
+	// Faces of the puzzle each cube has a sticker on when solved, one bit per
+	// face
+	private final byte[] stickers;
+
+	// Slot each slot ends up in after turning the whole puzzle, indexed by
+	// rotation * count + slot
+	private final short[] rotatedSlots;
+
+	/**
+	 * Tables for a puzzle size, built the first time they are needed
+	 * 
+	 * @param size
+	 *            number of cubes along each edge, MIN_SIZE to MAX_SIZE
+	 * @return shared geometry
+	 */
+	public static synchronized PuzzleGeometry get(int size) {
+		if (size < MIN_SIZE || size > MAX_SIZE) {
+			throw new IllegalArgumentException("Unsupported puzzle size: "
+					+ size);
+		}
+
+		if (GEOMETRIES[size] == null) {
+			GEOMETRIES[size] = new PuzzleGeometry(size);
+		}
+
+		return GEOMETRIES[size];
+	}
+
+	private PuzzleGeometry(int size) {
+		this.size = size;
+
+		int inner = size - 2;
+		count = size * size * size - inner * inner * inner;
+
+		homes = new byte[count * 3];
+		slots = new short[size * size * size];
+		stickers = new byte[count];
+
+		for (int i = 0, x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				for (int z = 0; z < size; z++) {
+					int index = (x * size + y) * size + z;
+
+					if (!isOuter(x) && !isOuter(y) && !isOuter(z)) {
+						slots[index] = -1;
+						continue;
+					}
+
+					homes[i * 3] = (byte) x;
+					homes[i * 3 + 1] = (byte) y;
+					homes[i * 3 + 2] = (byte) z;
+					slots[index] = (short) i;
+
+					for (int axis = 0; axis < 3; axis++) {
+						int layer = homes[i * 3 + axis];
+
+						if (isOuter(layer)) {
+							int face = PuzzleState.getAxisFace(axis,
+									(layer == 0) ? -1 : 1);
+							stickers[i] |= 1 << face;
+						}
+					}
+
+					i++;
+				}
+			}
+		}
+
+		layers = new int[size * 3][];
+		cycles = new int[size * 3][];
+		fixed = new int[size * 3][];
+
+		int[] location = new int[3];
+		int[] rotated = new int[3];
+
+		for (int layer = 0; layer < size; layer++) {
+			for (int axis = 0; axis < 3; axis++) {
+				int index = layer * 3 + axis;
+
+				int length = 0;
+				for (int slot = 0; slot < count; slot++) {
+					if (homes[slot * 3 + axis] == layer) {
+						length++;
+					}
+				}
+
+				layers[index] = new int[length];
+				for (int slot = 0, i = 0; slot < count; slot++) {
+					if (homes[slot * 3 + axis] == layer) {
+						layers[index][i++] = slot;
+					}
+				}
+
+				buildCycles(index, axis, location, rotated);
+			}
+		}
+
+		rotatedSlots = new short[Rotation.COUNT * count];
+		for (int rotation = 0; rotation < Rotation.COUNT; rotation++) {
+			for (int slot = 0; slot < count; slot++) {
+				getCenteredLocation(slot, location);
+				Rotation.apply(rotation, location, rotated);
+				rotatedSlots[rotation * count + slot] = (short) getCenteredSlot(rotated);
+			}
+		}
+	}
+
+	/**
+	 * Follow the slots of a layer around a positive quarter turn
+	 */
+	private void buildCycles(int index, int axis, int[] location, int[] rotated) {
+		int[] layer = layers[index];
+		int rotation = Rotation.getMoveRotation(Move.encode(axis, 0,
+				Move.POSITIVE));
+
+		// Where each slot of the layer goes
+		int[] next = new int[layer.length];
+		int moving = 0;
+		for (int i = 0; i < layer.length; i++) {
+			getCenteredLocation(layer[i], location);
+			Rotation.apply(rotation, location, rotated);
+			next[i] = getCenteredSlot(rotated);
+
+			if (next[i] != layer[i]) {
+				moving++;
+			}
+		}
+
+		cycles[index] = new int[moving];
+		fixed[index] = new int[layer.length - moving];
+
+		boolean[] used = new boolean[count];
+		for (int i = 0, j = 0, k = 0; i < layer.length; i++) {
+			if (used[layer[i]]) {
+				continue;
+			}
+
+			if (next[i] == layer[i]) {
+				fixed[index][k++] = layer[i];
+				continue;
+			}
+
+			for (int slot = layer[i], turn = 0; turn < 4; turn++) {
+				cycles[index][j++] = slot;
+				used[slot] = true;
+
+				getCenteredLocation(slot, location);
+				Rotation.apply(rotation, location, rotated);
+				slot = getCenteredSlot(rotated);
+			}
+		}
+	}
+
+	/**
+	 * Location of a slot with the center of the puzzle at 0, doubled so that
+	 * puzzles with an even size still have whole numbers
+	 */
+	private void getCenteredLocation(int slot, int[] location) {
+		for (int axis = 0; axis < 3; axis++) {
+			location[axis] = homes[slot * 3 + axis] * 2 - (size - 1);
+		}
+	}
+
+	private int getCenteredSlot(int[] location) {
+		return getSlot((location[0] + size - 1) / 2,
+				(location[1] + size - 1) / 2, (location[2] + size - 1) / 2);
+	}
+
+	private boolean isOuter(int layer) {
+		return layer == 0 || layer == size - 1;
+	}
+
+	/**
+	 * Number of cubes along each edge of the puzzle
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Number of cubes on the surface of the puzzle
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Number of move codes, a positive and negative turn for every layer
+	 */
+	public int getMoveCount() {
+		return size * 6;
+	}
+
+	/**
+	 * Slot at a location
+	 * 
+	 * @param x
+	 *            layer index along x, 0 to size - 1
+	 * @param y
+	 *            layer index along y
+	 * @param z
+	 *            layer index along z
+	 * @return slot index, -1 inside the puzzle
+	 */
+	public int getSlot(int x, int y, int z) {
+		return slots[(x * size + y) * size + z];
+	}
+
+	/**
+	 * Layer index of a slot along an axis
+	 * 
+	 * @param slot
+	 *            slot index
+	 * @param axis
+	 *            axis of the coordinate
+	 * @return 0 to size - 1
+	 */
+	public int getLocation(int slot, int axis) {
+		return homes[slot * 3 + axis];
+	}
+
+	/**
+	 * Slots in the layer a move rotates. Outer layers have size * size slots,
+	 * inner layers have 4 * (size - 1). The array is shared and must not be
+	 * modified.
+	 * 
+	 * @param move
+	 *            move code
+	 * @return slot indices
+	 */
+	public int[] getLayerSlots(int move) {
+		return layers[move >> 1];
+	}
+
+	/**
+	 * 4-cycles of slots for a positive quarter turn of the layer a move
+	 * rotates. A negative turn follows each cycle backward. The array is
+	 * shared and must not be modified.
+	 */
+	public int[] getCycles(int move) {
+		return cycles[move >> 1];
+	}
+
+	/**
+	 * Slots in the layer a move rotates that turn in place. The array is
+	 * shared and must not be modified.
+	 */
+	public int[] getFixedSlots(int move) {
+		return fixed[move >> 1];
+	}
+
+	/**
+	 * Faces of the puzzle a cube has a sticker on when solved
+	 * 
+	 * @param cube
+	 *            cube index
+	 * @return one bit for each face, see PuzzleState
+	 */
+	public int getStickers(int cube) {
+		return stickers[cube];
+	}
+
+	/**
+	 * Slot a slot ends up in after turning the whole puzzle
+	 * 
+	 * @param rotation
+	 *            rotation index, see Rotation
+	 * @param slot
+	 *            slot index
+	 * @return slot index
+	 */
+	public int getRotatedSlot(int rotation, int slot) {
+		return rotatedSlots[rotation * count + slot];
+	}
+
+}
@@ -0,0 +1,575 @@
+package com.fivevsthree.puzzlecube.Models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Primitive state of the puzzle. Each surface cube is tracked by the slot it
+ * is in and its orientation, see Rotation, so a layer rotation is a few array
+ * lookups for each cube in the layer instead of a matrix multiply. The same
+ * state works for any size from PuzzleGeometry.MIN_SIZE to MAX_SIZE.
+ * 
+ * Counters of the stickers on each face are updated as cubes move, so
+ * checking if the puzzle or a face is solved never has to look at the cubes.
+ * Turning the whole puzzle does not change whether it is solved.
+ * 
+ * A 64-bit Zobrist hash of the cubes is kept the same way. Each cube in a
+ * slot with an orientation has its own random key, and the hash is the XOR of
+ * the keys of every cube, so a move only updates the cubes it turns.
+ */
+public class PuzzleState {
+
+	// Faces are in the same order as the puzzle colors
+	public static final int BOTTOM = 0;
+	public static final int TOP = 1;
+	public static final int BACK = 2;
+	public static final int FRONT = 3;
+	public static final int LEFT = 4;
+	public static final int RIGHT = 5;
+
+	private static final int[] FACE_AXIS = { Move.Y, Move.Y, Move.Z, Move.Z,
+			Move.X, Move.X };
+	private static final int[] FACE_SIGN = { -1, 1, -1, 1, -1, 1 };
+
+	// Face on the negative and positive end of each axis
+	private static final int[][] AXIS_FACES = { { LEFT, RIGHT },
+			{ BOTTOM, TOP }, { BACK, FRONT } };
+
+	// Face each face of a cube points at after a rotation, indexed by
+	// rotation * 6 + face
+	private static final byte[] ROTATED_FACES = new byte[Rotation.COUNT * 6];
+
+	// The 4 rotations that turn a face to the same place as another rotation,
+	// indexed by rotation * 6 + face
+	private static final byte[][] SAME_FACE_ROTATIONS = new byte[Rotation.COUNT * 6][4];
+
+	static {
+		int[] normal = new int[3];
+
+		for (int rotation = 0; rotation < Rotation.COUNT; rotation++) {
+			for (int face = 0; face < 6; face++) {
+				getNormal(face, normal);
+				Rotation.apply(rotation, normal, normal);
+				ROTATED_FACES[rotation * 6 + face] = (byte) getFace(normal[0],
+						normal[1], normal[2]);
+			}
+		}
+
+		for (int rotation = 0; rotation < Rotation.COUNT; rotation++) {
+			for (int face = 0; face < 6; face++) {
+				int index = rotation * 6 + face;
+
+				for (int other = 0, i = 0; other < Rotation.COUNT; other++) {
+					if (ROTATED_FACES[other * 6 + face] == ROTATED_FACES[index]) {
+						SAME_FACE_ROTATIONS[index][i++] = (byte) other;
+					}
+				}
+			}
+		}
+	}
+
+	private final PuzzleGeometry geometry;
+
+	// Number of stickers on each face
+	private final int area;
+
+	// Cube in each slot of the puzzle
+	private final short[] positions;
+
+	// Orientation of each cube, see Rotation
+	private final byte[] orientations;
+
+	// Positions before a permutation is applied
+	private final short[] previousPositions;
+
+	// Stickers of each color on each face, indexed by face * 6 + color
+	private final int[] faceColors = new int[36];
+
+	// One bit for each face that is a single color
+	private int solvedFaces;
+
+	/*
+	 * Cubes that would be in place if the solved puzzle were turned by each
+	 * rotation. A cube with one sticker only has to be on the right face,
+	 * since those cubes look the same on larger puzzles.
+	 */
+	private final int[] inPlace = new int[Rotation.COUNT];
+
+	// Zobrist hash of the cube in every slot and its orientation
+	private long hash;
+
+	/**
+	 * Create a solved 3x3 puzzle state
+	 */
+	public PuzzleState() {
+		this(3);
+	}
+
+	/**
+	 * Create a solved puzzle state
+	 * 
+	 * @param size
+	 *            number of cubes along each edge of the puzzle
+	 */
+	public PuzzleState(int size) {
+		geometry = PuzzleGeometry.get(size);
+		area = size * size;
+
+		positions = new short[geometry.getCount()];
+		orientations = new byte[geometry.getCount()];
+		previousPositions = new short[geometry.getCount()];
+
+		reset();
+	}
+
+	/**
+	 * Return to the solved state
+	 */
+	public void reset() {
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = (short) i;
+			orientations[i] = Rotation.IDENTITY;
+		}
+
+		recount();
+	}
+
+	/**
+	 * Copy another state of the same size into this one
+	 * 
+	 * @param state
+	 *            state to copy
+	 */
+	public void set(PuzzleState state) {
+		System.arraycopy(state.positions, 0, positions, 0, positions.length);
+		System.arraycopy(state.orientations, 0, orientations, 0,
+				orientations.length);
+		System.arraycopy(state.faceColors, 0, faceColors, 0, 36);
+		System.arraycopy(state.inPlace, 0, inPlace, 0, Rotation.COUNT);
+		solvedFaces = state.solvedFaces;
+		hash = state.hash;
+	}
+
+	/**
+	 * Rotate a layer. Each cube in the layer is taken out of the counters,
+	 * moved and turned, then put back.
+	 * 
+	 * @param move
+	 *            move code, see Move
+	 */
+	public void apply(int move) {
+		int rotation = Rotation.getMoveRotation(move);
+		boolean positive = (Move.getDirection(move) == Move.POSITIVE);
+
+		int[] cycles = geometry.getCycles(move);
+		for (int i = 0; i < cycles.length; i += 4) {
+			int a = cycles[i], b = cycles[i + 1];
+			int c = cycles[i + 2], d = cycles[i + 3];
+
+			count(a, -1);
+			count(b, -1);
+			count(c, -1);
+			count(d, -1);
+
+			short cube;
+			if (positive) {
+				cube = positions[d];
+				positions[d] = positions[c];
+				positions[c] = positions[b];
+				positions[b] = positions[a];
+				positions[a] = cube;
+			} else {
+				cube = positions[a];
+				positions[a] = positions[b];
+				positions[b] = positions[c];
+				positions[c] = positions[d];
+				positions[d] = cube;
+			}
+
+			turn(a, rotation);
+			turn(b, rotation);
+			turn(c, rotation);
+			turn(d, rotation);
+		}
+
+		// The center of an outer layer turns without moving
+		for (int slot : geometry.getFixedSlots(move)) {
+			count(slot, -1);
+			turn(slot, rotation);
+		}
+	}
+
+	/**
+	 * Rotate layers for a compiled algorithm, see Notation
+	 * 
+	 * @param moves
+	 *            move codes in the order to apply them
+	 */
+	public void apply(byte[] moves) {
+		for (int i = 0; i < moves.length; i++) {
+			apply(moves[i]);
+		}
+	}
+
+	/**
+	 * Move every cube at once, see CubePermutation
+	 * 
+	 * @param permutation
+	 *            permutation of a puzzle with the same size
+	 */
+	public void apply(CubePermutation permutation) {
+		if (permutation.getSize() != geometry.getSize()) {
+			throw new IllegalArgumentException("Expected a permutation of a "
+					+ geometry.getSize() + "x" + geometry.getSize()
+					+ " puzzle");
+		}
+
+		System.arraycopy(positions, 0, previousPositions, 0, positions.length);
+
+		for (int slot = 0; slot < positions.length; slot++) {
+			int cube = previousPositions[permutation.getSource(slot)];
+			positions[slot] = (short) cube;
+			orientations[cube] = (byte) Rotation.compose(
+					permutation.getRotation(slot), orientations[cube]);
+		}
+
+		recount();
+	}
+
+	/**
+	 * Turn the cube in a slot and add it back to the counters
+	 */
+	private void turn(int slot, int rotation) {
+		int cube = positions[slot];
+		orientations[cube] = (byte) Rotation.compose(rotation,
+				orientations[cube]);
+
+		count(slot, 1);
+	}
+
+	/**
+	 * Add or remove the cube in a slot from the counters
+	 * 
+	 * @param slot
+	 *            slot index
+	 * @param amount
+	 *            1 to add the cube, -1 to remove it
+	 */
+	private void count(int slot, int amount) {
+		int cube = positions[slot];
+		int orientation = orientations[cube];
+		int stickers = geometry.getStickers(cube);
+		boolean single = (Integer.bitCount(stickers) == 1);
+
+		for (int color = 0; color < 6; color++) {
+			if ((stickers & (1 << color)) == 0) {
+				continue;
+			}
+
+			int face = ROTATED_FACES[orientation * 6 + color];
+			int index = face * 6 + color;
+
+			faceColors[index] += amount;
+
+			if (faceColors[index] == area) {
+				solvedFaces |= 1 << face;
+			} else if (amount < 0 && faceColors[index] == area - 1) {
+				solvedFaces &= ~(1 << face);
+			}
+
+			if (single) {
+				for (int rotation : SAME_FACE_ROTATIONS[orientation * 6 + color]) {
+					inPlace[rotation] += amount;
+				}
+			}
+		}
+
+		if (!single && geometry.getRotatedSlot(orientation, cube) == slot) {
+			inPlace[orientation] += amount;
+		}
+
+		// Removing and adding a cube both toggle its key
+		hash ^= getKey(slot, cube, orientation);
+	}
+
+	/**
+	 * Random key of a cube in a slot with an orientation. The keys are mixed
+	 * from the numbers instead of stored, since a table for every cube in
+	 * every slot would be too large for big puzzles. The same numbers always
+	 * give the same key, so hashes can be saved and compared between runs.
+	 */
+	private long getKey(int slot, int cube, int orientation) {
+		long key = ((long) slot * positions.length + cube) * Rotation.COUNT
+				+ orientation;
+
+		// SplitMix64 finalizer
+		key += 0x9e3779b97f4a7c15L;
+		key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+		key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+		return key ^ (key >>> 31);
+	}
+
+	/**
+	 * Rebuild the counters after the cubes have been set directly
+	 */
+	private void recount() {
+		for (int i = 0; i < 36; i++) {
+			faceColors[i] = 0;
+		}
+		for (int i = 0; i < Rotation.COUNT; i++) {
+			inPlace[i] = 0;
+		}
+		solvedFaces = 0;
+		hash = 0;
+
+		for (int slot = 0; slot < positions.length; slot++) {
+			count(slot, 1);
+		}
+	}
+
+	/**
+	 * Check if every face is a single color
+	 * 
+	 * @return true if the puzzle is solved
+	 */
+	public boolean isSolved() {
+		return solvedFaces == 0x3f;
+	}
+
+	/**
+	 * Number of cubes that are not in place, compared to the solved puzzle
+	 * turned whichever way leaves the fewest out of place
+	 * 
+	 * @return 0 when solved
+	 */
+	public int getPiecesOutOfPlace() {
+		int best = 0;
+		for (int i = 0; i < Rotation.COUNT; i++) {
+			best = Math.max(best, inPlace[i]);
+		}
+
+		return positions.length - best;
+	}
+
+	/**
+	 * Check if every sticker on a face is the same color
+	 * 
+	 * @param face
+	 *            face of the puzzle, BOTTOM to RIGHT
+	 * @return true if the face is solved
+	 */
+	public boolean isFaceSolved(int face) {
+		return (solvedFaces & (1 << face)) != 0;
+	}
+
+	/**
+	 * Zobrist hash of the state. Equal states always have the same hash, and
+	 * different states of the same size almost never do.
+	 * 
+	 * @return 64-bit hash
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Number of cubes along each edge of the puzzle
+	 */
+	public int getSize() {
+		return geometry.getSize();
+	}
+
+	public PuzzleGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Cube currently in a slot
+	 * 
+	 * @param slot
+	 *            slot index, the same as the index of the cube that belongs
+	 *            there
+	 * @return cube index
+	 */
+	public int getCubeAt(int slot) {
+		return positions[slot];
+	}
+
+	/**
+	 * Orientation of a cube
+	 * 
+	 * @param cube
+	 *            cube index
+	 * @return rotation index, see Rotation
+	 */
+	public int getOrientation(int cube) {
+		return orientations[cube];
+	}
+
+	/**
+	 * Set the state from the cubes of a puzzle
+	 * 
+	 * @param locations
+	 *            layer index along x, y and z for each cube index
+	 * @param rotations
+	 *            orientation of each cube index, see Rotation
+	 */
+	public void set(int[] locations, int[] rotations) {
+		for (int i = 0; i < positions.length; i++) {
+			positions[geometry.getSlot(locations[i * 3], locations[i * 3 + 1],
+					locations[i * 3 + 2])] = (short) i;
+			orientations[i] = (byte) rotations[i];
+		}
+
+		recount();
+	}
+
+	/**
+	 * Number of bytes save needs, three for each cube
+	 */
+	int getSavedLength() {
+		return positions.length * 3;
+	}
+
+	/**
+	 * Copy the cube in each slot and the orientation of each cube into an
+	 * array, which takes much less memory than a copy of the state
+	 * 
+	 * @param saved
+	 *            array of getSavedLength bytes
+	 */
+	void save(byte[] saved) {
+		int count = positions.length;
+		for (int slot = 0; slot < count; slot++) {
+			saved[slot * 2] = (byte) (positions[slot] >> 8);
+			saved[slot * 2 + 1] = (byte) positions[slot];
+		}
+		System.arraycopy(orientations, 0, saved, count * 2, count);
+	}
+
+	/**
+	 * Set the state from an array filled by save on a state of the same size
+	 */
+	void restore(byte[] saved) {
+		int count = positions.length;
+		for (int slot = 0; slot < count; slot++) {
+			positions[slot] = (short) ((saved[slot * 2] & 0xff) << 8
+					| saved[slot * 2 + 1] & 0xff);
+		}
+		System.arraycopy(saved, count * 2, orientations, 0, count);
+
+		recount();
+	}
+
+	/**
+	 * Write the size, the cube in each slot and the orientation of each cube
+	 * 
+	 * @param output
+	 *            stream to write to
+	 */
+	public void write(DataOutput output) throws IOException {
+		output.writeByte(geometry.getSize());
+		for (int slot = 0; slot < positions.length; slot++) {
+			output.writeShort(positions[slot]);
+		}
+		output.write(orientations);
+	}
+
+	/**
+	 * Read a state written by write
+	 * 
+	 * @param input
+	 *            stream to read from
+	 * @return the state that was written
+	 * @throws IOException
+	 *             if the stream fails or does not hold a valid state
+	 */
+	public static PuzzleState read(DataInput input) throws IOException {
+		int size = input.readUnsignedByte();
+		if (size < PuzzleGeometry.MIN_SIZE || size > PuzzleGeometry.MAX_SIZE) {
+			throw new IOException("Invalid puzzle size " + size);
+		}
+
+		PuzzleState state = new PuzzleState(size);
+		short[] positions = state.positions;
+		byte[] orientations = state.orientations;
+
+		// Every cube has to be in exactly one slot
+		boolean[] isPlaced = new boolean[positions.length];
+		for (int slot = 0; slot < positions.length; slot++) {
+			int cube = input.readShort();
+			if (cube < 0 || cube >= positions.length || isPlaced[cube]) {
+				throw new IOException("Invalid cube " + cube + " in slot "
+						+ slot);
+			}
+
+			isPlaced[cube] = true;
+			positions[slot] = (short) cube;
+		}
+
+		input.readFully(orientations);
+		for (int cube = 0; cube < orientations.length; cube++) {
+			if (orientations[cube] < 0
+					|| orientations[cube] >= Rotation.COUNT) {
+				throw new IOException("Invalid orientation of cube " + cube);
+			}
+		}
+
+		state.recount();
+		return state;
+	}
+
+	/**
+	 * Face of the puzzle a unit vector points at
+	 */
+	public static int getFace(int x, int y, int z) {
+		if (x != 0) {
+			return getAxisFace(Move.X, x);
+		} else if (y != 0) {
+			return getAxisFace(Move.Y, y);
+		}
+
+		return getAxisFace(Move.Z, z);
+	}
+
+	/**
+	 * Face on one end of an axis
+	 * 
+	 * @param axis
+	 *            axis of the face
+	 * @param sign
+	 *            negative for the face on the negative end
+	 * @return face of the puzzle
+	 */
+	public static int getAxisFace(int axis, int sign) {
+		return AXIS_FACES[axis][(sign < 0) ? 0 : 1];
+	}
+
+	public static int getFaceAxis(int face) {
+		return FACE_AXIS[face];
+	}
+
+	public static int getFaceSign(int face) {
+		return FACE_SIGN[face];
+	}
+
+	/**
+	 * Face of the puzzle a face of a cube points at after a rotation
+	 * 
+	 * @param rotation
+	 *            rotation index, see Rotation
+	 * @param face
+	 *            face of the cube
+	 * @return face of the puzzle
+	 */
+	public static int getRotatedFace(int rotation, int face) {
+		return ROTATED_FACES[rotation * 6 + face];
+	}
+
+	private static void getNormal(int face, int[] normal) {
+		normal[0] = normal[1] = normal[2] = 0;
+		normal[FACE_AXIS[face]] = FACE_SIGN[face];
+	}
+
+}
@@ -0,0 +1,205 @@
+package com.fivevsthree.puzzlecube.Models;
+
+/**
+ * The 24 rotations that map a cube onto itself. A cube orientation is stored
+ * as an index into this table, so turning a layer is a table lookup instead
+ * of a float matrix multiply and orientations never drift. Index 0 is the
+ * identity.
+ */
+public final class Rotation {
+
+	/**
+	 * Number of cube rotations
+	 */
+	public static final int COUNT = 24;
+
+	public static final int IDENTITY = 0;
+
+	// Integer rotation matrix of each rotation, row major
+	private static final int[][] MATRICES = new int[COUNT][9];
+
+	// Index of a * b, indexed by a * COUNT + b
+	private static final byte[] COMPOSE = new byte[COUNT * COUNT];
+
+	private static final byte[] INVERSE = new byte[COUNT];
+
+	// Quarter turn around each axis, indexed by axis * 2 + direction
+	private static final byte[] QUARTER_TURNS = new byte[6];
+
+	static {
+		int[][] turns = new int[6][];
+		for (int axis = 0; axis < 3; axis++) {
+			for (int direction = 0; direction < 2; direction++) {
+				turns[axis * 2 + direction] = getQuarterTurnMatrix(axis,
+						direction);
+			}
+		}
+
+		// Find every rotation by turning the ones already found
+		MATRICES[IDENTITY] = new int[] { 1, 0, 0, 0, 1, 0, 0, 0, 1 };
+		int count = 1;
+		for (int i = 0; i < count; i++) {
+			for (int[] turn : turns) {
+				int[] rotation = multiply(turn, MATRICES[i]);
+
+				if (find(rotation, count) < 0) {
+					MATRICES[count++] = rotation;
+				}
+			}
+		}
+
+		for (int a = 0; a < COUNT; a++) {
+			for (int b = 0; b < COUNT; b++) {
+				int c = find(multiply(MATRICES[a], MATRICES[b]), COUNT);
+
+				COMPOSE[a * COUNT + b] = (byte) c;
+				if (c == IDENTITY) {
+					INVERSE[a] = (byte) b;
+				}
+			}
+		}
+
+		for (int turn = 0; turn < 6; turn++) {
+			QUARTER_TURNS[turn] = (byte) find(turns[turn], COUNT);
+		}
+	}
+
+	private Rotation() {
+	}
+
+	/**
+	 * Rotation that applies b and then a
+	 * 
+	 * @param a
+	 *            rotation applied second
+	 * @param b
+	 *            rotation applied first
+	 * @return rotation index
+	 */
+	public static int compose(int a, int b) {
+		return COMPOSE[a * COUNT + b];
+	}
+
+	public static int inverse(int rotation) {
+		return INVERSE[rotation];
+	}
+
+	/**
+	 * Rotation of a layer turned by a move
+	 * 
+	 * @param move
+	 *            move code, see Move
+	 * @return rotation index
+	 */
+	public static int getMoveRotation(int move) {
+		return QUARTER_TURNS[Move.getAxis(move) * 2 + Move.getDirection(move)];
+	}
+
+	/**
+	 * Element of the rotation matrix
+	 * 
+	 * @param rotation
+	 *            rotation index
+	 * @param row
+	 *            0 to 2
+	 * @param column
+	 *            0 to 2
+	 * @return -1, 0 or 1
+	 */
+	public static int get(int rotation, int row, int column) {
+		return MATRICES[rotation][row * 3 + column];
+	}
+
+	/**
+	 * Rotate an integer vector
+	 * 
+	 * @param rotation
+	 *            rotation index
+	 * @param vector
+	 *            x, y and z
+	 * @param result
+	 *            rotated x, y and z, may be the same array as vector
+	 */
+	public static void apply(int rotation, int[] vector, int[] result) {
+		int[] m = MATRICES[rotation];
+		int x = vector[0], y = vector[1], z = vector[2];
+
+		result[0] = m[0] * x + m[1] * y + m[2] * z;
+		result[1] = m[3] * x + m[4] * y + m[5] * z;
+		result[2] = m[6] * x + m[7] * y + m[8] * z;
+	}
+
+	/**
+	 * Find the rotation closest to a float rotation matrix, such as one that
+	 * has drifted from being multiplied many times
+	 * 
+	 * @param matrix
+	 *            rotation matrix, row major
+	 * @return rotation index
+	 */
+	public static int nearest(float[] matrix) {
+		int best = IDENTITY;
+		float bestScore = Float.NEGATIVE_INFINITY;
+
+		for (int rotation = 0; rotation < COUNT; rotation++) {
+			float score = 0f;
+			for (int i = 0; i < 9; i++) {
+				score += MATRICES[rotation][i] * matrix[i];
+			}
+
+			if (score > bestScore) {
+				bestScore = score;
+				best = rotation;
+			}
+		}
+
+		return best;
+	}
+
+	private static int find(int[] matrix, int count) {
+		for (int i = 0; i < count; i++) {
+			boolean same = true;
+			for (int j = 0; j < 9 && same; j++) {
+				same = (MATRICES[i][j] == matrix[j]);
+			}
+
+			if (same) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static int[] multiply(int[] a, int[] b) {
+		int[] result = new int[9];
+
+		for (int row = 0; row < 3; row++) {
+			for (int column = 0; column < 3; column++) {
+				for (int k = 0; k < 3; k++) {
+					result[row * 3 + column] += a[row * 3 + k]
+							* b[k * 3 + column];
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Matrix of a 90 degree turn, the same direction Matrix4.rotate turns for
+	 * a positive angle around a positive axis
+	 */
+	private static int[] getQuarterTurnMatrix(int axis, int direction) {
+		int sign = (direction == Move.POSITIVE) ? 1 : -1;
+		int[] m = new int[9];
+
+		int a = (axis + 1) % 3, b = (axis + 2) % 3;
+		m[axis * 3 + axis] = 1;
+		m[a * 3 + b] = -sign;
+		m[b * 3 + a] = sign;
+
+		return m;
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.fivevsthree.puzzlecube.Models;
+
+import java.util.Random;
+
+/**
+ * Random scrambles that do not need a running game. The moves are the same
+ * kind the game has always scrambled with: a random layer of a random axis
+ * turned either way, never turning the same axis twice in a row.
+ */
+public final class Scrambler {
+
+	private Scrambler() {
+	}
+
+	/**
+	 * Pick random moves for a scramble
+	 * 
+	 * @param size
+	 *            number of cubes along each edge of the puzzle
+	 * @param rotations
+	 *            number of layers to rotate
+	 * @param random
+	 *            source of random numbers, seeded to repeat a scramble
+	 * @return move codes, see Move
+	 */
+	public static byte[] generate(int size, int rotations, Random random) {
+		byte[] moves = new byte[rotations];
+
+		int lastAxis = -1;
+		for (int i = 0; i < rotations; i++) {
+			// Make sure we don't rotate the same axis twice in a row
+			int axis = random.nextInt(3);
+			while (axis == lastAxis) {
+				axis = random.nextInt(3);
+			}
+			lastAxis = axis;
+
+			int direction = random.nextBoolean() ? Move.NEGATIVE
+					: Move.POSITIVE;
+			int layer = random.nextInt(size);
+
+			moves[i] = (byte) Move.encode(axis, layer, direction);
+		}
+
+		return moves;
+	}
+
+	/**
+	 * Scramble a puzzle state
+	 * 
+	 * @param state
+	 *            state to scramble, usually solved
+	 * @param rotations
+	 *            number of layers to rotate
+	 * @param random
+	 *            source of random numbers, seeded to repeat a scramble
+	 */
+	public static void scramble(PuzzleState state, int rotations,
+			Random random) {
+		state.apply(generate(state.getSize(), rotations, random));
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+/**
+ * Receives the progress of a PatternDatabaseBuilder
+ */
+public interface BuildListener {
+	/**
+	 * Called on the building thread after every position at a distance has
+	 * been found
+	 * 
+	 * @param distance
+	 *            distance that was filled in
+	 * @param found
+	 *            positions at that distance
+	 * @param filled
+	 *            positions found so far
+	 * @param size
+	 *            positions in the table
+	 */
+	public void distanceFilled(int distance, long found, long filled,
+			long size);
+}
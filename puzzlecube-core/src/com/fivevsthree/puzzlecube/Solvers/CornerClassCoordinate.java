@@ -0,0 +1,72 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+/**
+ * Permutation and twist of all eight corners up to symmetry, class * TWISTS
+ * + twist. A position is conjugated so its permutation is the representative
+ * of its class, see CubeSymmetries, which leaves 2768 * 2187 = 6053616
+ * values instead of the 88179840 of every permutation and twist.
+ * 
+ * When a representative is symmetric itself, several twists with it are the
+ * same position seen differently, and the lowest of them is used, so all
+ * symmetric positions share one entry.
+ */
+class CornerClassCoordinate implements PatternCoordinate {
+
+	public static final long SIZE = (long) CubeSymmetries.CORNER_CLASSES
+			* TwoPhaseTables.TWISTS;
+
+	private final TwoPhaseTables tables;
+	private final CubeSymmetries symmetries;
+
+	CornerClassCoordinate(TwoPhaseTables tables, CubeSymmetries symmetries) {
+		this.tables = tables;
+		this.symmetries = symmetries;
+	}
+
+	@Override
+	public long getSize() {
+		return SIZE;
+	}
+
+	@Override
+	public void getNeighbors(long index, long[] neighbors) {
+		int cornerClass = (int) (index / TwoPhaseTables.TWISTS);
+		int twist = (int) (index % TwoPhaseTables.TWISTS);
+
+		int permutation = symmetries.cornerRepresentatives[cornerClass];
+		int permutationRow = permutation * TwoPhaseTables.MOVES;
+		int twistRow = twist * TwoPhaseTables.MOVES;
+
+		for (int move = 0; move < TwoPhaseTables.MOVES; move++) {
+			int permutationMoved = tables.cornerMoves[permutationRow + move];
+			int twistMoved = tables.twistMoves[twistRow + move];
+
+			neighbors[move] = getIndex(permutationMoved, twistMoved);
+		}
+	}
+
+	/**
+	 * Coordinate of a corner permutation and twist, see CubieCube
+	 */
+	long getIndex(int permutation, int twist) {
+		int cornerClass = symmetries.cornerClasses[permutation];
+		int symmetry = symmetries.cornerSymmetries[permutation];
+		int conjugate = symmetries.twistConjugates[twist * CubeSymmetries.COUNT
+				+ symmetry];
+
+		// Every representative has the identity
+		int stabilizer = symmetries.cornerStabilizers[cornerClass];
+		if (stabilizer != 1) {
+			int row = conjugate * CubeSymmetries.COUNT;
+			for (int i = 1; i < CubeSymmetries.COUNT; i++) {
+				if ((stabilizer & (1 << i)) != 0) {
+					conjugate = Math.min(conjugate,
+							symmetries.twistConjugates[row + i]);
+				}
+			}
+		}
+
+		return (long) cornerClass * TwoPhaseTables.TWISTS + conjugate;
+	}
+
+}
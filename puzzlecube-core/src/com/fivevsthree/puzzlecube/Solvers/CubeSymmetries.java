@@ -0,0 +1,320 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import com.fivevsthree.puzzlecube.Models.CubieCube;
+import com.fivevsthree.puzzlecube.Models.CubieRank;
+
+/**
+ * The 16 symmetries of the cube that keep the U and D faces on the U-D axis:
+ * the turns around that axis, the half turns that swap U and D, and their
+ * mirror images. Conjugating a position by a symmetry, S * C * S^-1, gives a
+ * position that is exactly as far from solved, so a table only needs one
+ * entry for each class of symmetric positions.
+ * 
+ * The corner permutations fall into 2768 classes, and the twist of a
+ * conjugated position only depends on the twist before, which is why these
+ * 16 are used and not all 48. The turns around the URF corner would make the
+ * twist depend on the permutation too.
+ * 
+ * Mirrored cubes have corner twists 3 to 5, as in Kociemba's cube explorer,
+ * and only ever appear while conjugating.
+ */
+final class CubeSymmetries {
+
+	public static final int COUNT = 16;
+
+	// Classes of corner permutations
+	public static final int CORNER_CLASSES = 2768;
+
+	// @formatter:off
+
+	// Half turn around the F-B axis
+	private static final byte[] F2_CORNERS = { 5, 4, 7, 6, 1, 0, 3, 2 };
+	private static final byte[] F2_EDGES = { 6, 5, 4, 7, 2, 1, 0, 3, 9, 8,
+			11, 10 };
+
+	// Quarter turn around the U-D axis
+	private static final byte[] U4_CORNERS = { 3, 0, 1, 2, 7, 4, 5, 6 };
+	private static final byte[] U4_EDGES = { 3, 0, 1, 2, 7, 4, 5, 6, 11, 8,
+			9, 10 };
+	private static final byte[] U4_FLIPS = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1,
+			1, 1 };
+
+	// Mirror image through the plane between L and R
+	private static final byte[] LR2_CORNERS = { 1, 0, 3, 2, 5, 4, 7, 6 };
+	private static final byte[] LR2_EDGES = { 2, 1, 0, 3, 6, 5, 4, 7, 9, 8,
+			11, 10 };
+
+	// @formatter:on
+
+	private static CubeSymmetries symmetries;
+
+	private final Symmetry[] cubes = new Symmetry[COUNT];
+	private final int[] inverses = new int[COUNT];
+
+	// Class of each corner permutation and the symmetry that conjugates it
+	// to the representative of its class
+	final char[] cornerClasses = new char[CubieRank.CORNER_PERMUTATIONS];
+	final byte[] cornerSymmetries = new byte[CubieRank.CORNER_PERMUTATIONS];
+
+	// Lowest corner permutation of each class
+	final char[] cornerRepresentatives = new char[CORNER_CLASSES];
+
+	// Symmetries that conjugate each representative to itself, one bit each
+	final char[] cornerStabilizers = new char[CORNER_CLASSES];
+
+	// Twist after conjugating, indexed by twist * COUNT + symmetry
+	final char[] twistConjugates = new char[TwoPhaseTables.TWISTS * COUNT];
+
+	/**
+	 * Symmetry tables shared by every solver, built the first time they are
+	 * needed
+	 */
+	static synchronized CubeSymmetries get() {
+		if (symmetries == null) {
+			symmetries = new CubeSymmetries(TwoPhaseTables.get());
+		}
+
+		return symmetries;
+	}
+
+	private CubeSymmetries(TwoPhaseTables tables) {
+		buildCubes();
+		checkFaceMoves(tables);
+		buildCornerClasses();
+		buildTwistConjugates();
+	}
+
+	/**
+	 * Combine the basic symmetries into all 16, the identity first
+	 */
+	private void buildCubes() {
+		Symmetry f2 = new Symmetry(F2_CORNERS, new byte[CubieCube.CORNERS],
+				F2_EDGES, new byte[CubieCube.EDGES]);
+		Symmetry u4 = new Symmetry(U4_CORNERS, new byte[CubieCube.CORNERS],
+				U4_EDGES, U4_FLIPS);
+		Symmetry lr2 = new Symmetry(LR2_CORNERS, new byte[CubieCube.CORNERS],
+				LR2_EDGES, new byte[CubieCube.EDGES]);
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			lr2.twists[i] = 3;
+		}
+
+		Symmetry current = new Symmetry();
+		int index = 0;
+		for (int f = 0; f < 2; f++) {
+			for (int u = 0; u < 4; u++) {
+				for (int l = 0; l < 2; l++) {
+					cubes[index++] = current;
+					current = current.multiply(lr2);
+				}
+				current = current.multiply(u4);
+			}
+			current = current.multiply(f2);
+		}
+
+		Symmetry identity = new Symmetry();
+		for (int i = 0; i < COUNT; i++) {
+			for (int j = 0; j < COUNT; j++) {
+				if (cubes[i].multiply(cubes[j]).isSame(identity)) {
+					inverses[i] = j;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check that every symmetry turns each face move into a face move, which
+	 * fails if the symmetries do not match the puzzle model
+	 */
+	private void checkFaceMoves(TwoPhaseTables tables) {
+		Symmetry[] moves = new Symmetry[TwoPhaseTables.MOVES];
+		for (int move = 0; move < TwoPhaseTables.MOVES; move++) {
+			moves[move] = new Symmetry();
+			for (int i = 0; i < CubieCube.CORNERS; i++) {
+				moves[move].corners[i] = (byte) tables.getCornerFrom(move, i);
+				moves[move].twists[i] = (byte) tables.getCornerTwist(move, i);
+			}
+			for (int i = 0; i < CubieCube.EDGES; i++) {
+				moves[move].edges[i] = (byte) tables.getEdgeFrom(move, i);
+				moves[move].flips[i] = (byte) tables.getEdgeFlip(move, i);
+			}
+		}
+
+		for (int symmetry = 0; symmetry < COUNT; symmetry++) {
+			for (int move = 0; move < TwoPhaseTables.MOVES; move++) {
+				Symmetry conjugate = cubes[symmetry].multiply(moves[move])
+						.multiply(cubes[inverses[symmetry]]);
+
+				boolean isFaceMove = false;
+				for (Symmetry other : moves) {
+					isFaceMove |= conjugate.isSame(other);
+				}
+
+				if (!isFaceMove) {
+					throw new IllegalStateException("Symmetry " + symmetry
+							+ " does not turn face move " + move
+							+ " into a face move");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Put every corner permutation in a class with the permutations it can
+	 * be conjugated to, numbering the classes in order of their lowest
+	 * permutation
+	 */
+	private void buildCornerClasses() {
+		byte[] pieces = new byte[CubieCube.CORNERS];
+		byte[] conjugate = new byte[CubieCube.CORNERS];
+
+		boolean[] isSorted = new boolean[CubieRank.CORNER_PERMUTATIONS];
+		int classes = 0;
+
+		for (int corners = 0; corners < isSorted.length; corners++) {
+			if (isSorted[corners]) {
+				continue;
+			}
+
+			if (classes == CORNER_CLASSES) {
+				throw new IllegalStateException("Too many corner classes");
+			}
+			cornerRepresentatives[classes] = (char) corners;
+
+			CubieRank.unrankPermutation(corners, pieces, CubieCube.CORNERS);
+			for (int symmetry = 0; symmetry < COUNT; symmetry++) {
+				conjugateCorners(pieces, symmetry, conjugate);
+				int rank = CubieRank.rankPermutation(conjugate,
+						CubieCube.CORNERS);
+
+				if (rank == corners) {
+					cornerStabilizers[classes] |= 1 << symmetry;
+				}
+
+				// The inverse takes the conjugate back to the representative
+				if (!isSorted[rank]) {
+					isSorted[rank] = true;
+					cornerClasses[rank] = (char) classes;
+					cornerSymmetries[rank] = (byte) inverses[symmetry];
+				}
+			}
+
+			classes++;
+		}
+
+		if (classes != CORNER_CLASSES) {
+			throw new IllegalStateException("Found " + classes
+					+ " corner classes");
+		}
+	}
+
+	/**
+	 * Conjugate a corner permutation, S * C * S^-1
+	 */
+	private void conjugateCorners(byte[] pieces, int symmetry, byte[] result) {
+		Symmetry cube = cubes[symmetry];
+		Symmetry inverse = cubes[inverses[symmetry]];
+
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			result[i] = cube.corners[pieces[inverse.corners[i]]];
+		}
+	}
+
+	private void buildTwistConjugates() {
+		Symmetry cube = new Symmetry();
+
+		for (int twist = 0; twist < TwoPhaseTables.TWISTS; twist++) {
+			CubieRank.unrankOrientation(twist, cube.twists, CubieCube.CORNERS,
+					3);
+
+			for (int symmetry = 0; symmetry < COUNT; symmetry++) {
+				Symmetry conjugate = cubes[symmetry].multiply(cube).multiply(
+						cubes[inverses[symmetry]]);
+
+				int rank = CubieRank.rankOrientation(conjugate.twists,
+						CubieCube.CORNERS, 3);
+				twistConjugates[twist * COUNT + symmetry] = (char) rank;
+			}
+		}
+	}
+
+	/**
+	 * A cube that may be mirrored, like CubieCube but with twists 3 to 5 for
+	 * mirrored corners
+	 */
+	private static class Symmetry {
+
+		final byte[] corners = new byte[CubieCube.CORNERS];
+		final byte[] twists = new byte[CubieCube.CORNERS];
+		final byte[] edges = new byte[CubieCube.EDGES];
+		final byte[] flips = new byte[CubieCube.EDGES];
+
+		Symmetry() {
+			for (int i = 0; i < CubieCube.CORNERS; i++) {
+				corners[i] = (byte) i;
+			}
+			for (int i = 0; i < CubieCube.EDGES; i++) {
+				edges[i] = (byte) i;
+			}
+		}
+
+		Symmetry(byte[] corners, byte[] twists, byte[] edges, byte[] flips) {
+			System.arraycopy(corners, 0, this.corners, 0, CubieCube.CORNERS);
+			System.arraycopy(twists, 0, this.twists, 0, CubieCube.CORNERS);
+			System.arraycopy(edges, 0, this.edges, 0, CubieCube.EDGES);
+			System.arraycopy(flips, 0, this.flips, 0, CubieCube.EDGES);
+		}
+
+		/**
+		 * This cube followed by another, see CubieCube.multiply
+		 */
+		Symmetry multiply(Symmetry cube) {
+			Symmetry result = new Symmetry();
+
+			for (int i = 0; i < CubieCube.CORNERS; i++) {
+				result.corners[i] = corners[cube.corners[i]];
+
+				int a = twists[cube.corners[i]];
+				int b = cube.twists[i];
+				int twist;
+				if (a < 3 && b < 3) {
+					twist = (a + b) % 3;
+				} else if (a < 3) {
+					// Only the second cube is mirrored
+					twist = (a + b >= 6) ? a + b - 3 : a + b;
+				} else if (b < 3) {
+					// Only the first cube is mirrored
+					twist = (a - b < 3) ? a - b + 3 : a - b;
+				} else {
+					// Both are mirrored, so the result is not
+					twist = (a - b < 0) ? a - b + 3 : a - b;
+				}
+				result.twists[i] = (byte) twist;
+			}
+
+			for (int i = 0; i < CubieCube.EDGES; i++) {
+				result.edges[i] = edges[cube.edges[i]];
+				result.flips[i] = (byte) (flips[cube.edges[i]] ^ cube.flips[i]);
+			}
+
+			return result;
+		}
+
+		boolean isSame(Symmetry cube) {
+			for (int i = 0; i < CubieCube.CORNERS; i++) {
+				if (corners[i] != cube.corners[i]
+						|| twists[i] != cube.twists[i]) {
+					return false;
+				}
+			}
+			for (int i = 0; i < CubieCube.EDGES; i++) {
+				if (edges[i] != cube.edges[i] || flips[i] != cube.flips[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+	}
+
+}
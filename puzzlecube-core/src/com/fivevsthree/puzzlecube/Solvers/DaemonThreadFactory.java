@@ -0,0 +1,24 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads of a solver or table builder as daemons, so a pool
+ * that is not shut down does not keep the JVM running
+ */
+class DaemonThreadFactory implements ThreadFactory {
+
+	private final String name;
+
+	DaemonThreadFactory(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import com.fivevsthree.puzzlecube.Models.CubieCube;
+
+/**
+ * Positions and flips of six of the twelve edges. The coordinate numbers the
+ * positions of the six edges in order, then their flips, which gives
+ * 12 * 11 * 10 * 9 * 8 * 7 * 64 = 42577920 values.
+ * 
+ * While searching, the group is kept as a packed int of five bits for each
+ * edge, its position * 2 + its flip, which a face move changes with six table
+ * lookups. Positions are counted from the first edge of the group, so the
+ * solved group is 0 either way.
+ */
+class EdgeGroupCoordinate implements PatternCoordinate {
+
+	public static final int EDGES = 6;
+
+	public static final long SIZE = 12 * 11 * 10 * 9 * 8 * 7 * 64L;
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	// First edge of the group
+	private final int first;
+
+	// Position * 2 + flip of an edge after each face move, indexed by
+	// (position * 2 + flip) * MOVES + move
+	private final byte[] edgeMoves = new byte[CubieCube.EDGES * 2
+			* TwoPhaseTables.MOVES];
+
+	/**
+	 * @param first
+	 *            first of the six edges, see CubieCube
+	 */
+	EdgeGroupCoordinate(TwoPhaseTables tables, int first) {
+		this.first = first;
+
+		for (int position = 0; position < CubieCube.EDGES; position++) {
+			int from = (position + first) % CubieCube.EDGES;
+
+			for (int move = 0; move < TwoPhaseTables.MOVES; move++) {
+				for (int to = 0; to < CubieCube.EDGES; to++) {
+					if (tables.getEdgeFrom(move, to) != from) {
+						continue;
+					}
+
+					int moved = (to - first + CubieCube.EDGES)
+							% CubieCube.EDGES;
+					int flip = tables.getEdgeFlip(move, to);
+					for (int i = 0; i < 2; i++) {
+						edgeMoves[(position * 2 + i) * TwoPhaseTables.MOVES
+								+ move] = (byte) (moved * 2 + (i ^ flip));
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public long getSize() {
+		return SIZE;
+	}
+
+	@Override
+	public void getNeighbors(long index, long[] neighbors) {
+		int edges = getEdges(index);
+
+		for (int move = 0; move < TwoPhaseTables.MOVES; move++) {
+			neighbors[move] = getIndex(move(edges, move));
+		}
+	}
+
+	/**
+	 * Packed edges of the group on a cube
+	 */
+	int getEdges(CubieCube cube) {
+		int edges = 0;
+
+		for (int position = 0; position < CubieCube.EDGES; position++) {
+			int edge = cube.getEdge(position) - first;
+			if (edge < 0 || edge >= EDGES) {
+				continue;
+			}
+
+			int relative = (position - first + CubieCube.EDGES)
+					% CubieCube.EDGES;
+			int flip = cube.getEdgeFlip(position);
+			edges |= (relative * 2 + flip) << (edge * BITS);
+		}
+
+		return edges;
+	}
+
+	/**
+	 * Apply a face move to packed edges
+	 */
+	int move(int edges, int move) {
+		int moved = 0;
+
+		for (int i = 0; i < EDGES; i++) {
+			int edge = (edges >>> (i * BITS)) & MASK;
+			int next = edgeMoves[edge * TwoPhaseTables.MOVES + move];
+			moved |= next << (i * BITS);
+		}
+
+		return moved;
+	}
+
+	/**
+	 * Coordinate of packed edges
+	 */
+	long getIndex(int edges) {
+		int used = 0, rank = 0, flips = 0;
+
+		for (int i = 0; i < EDGES; i++) {
+			int edge = (edges >>> (i * BITS)) & MASK;
+			int position = edge >> 1;
+
+			// Number of free positions before this one
+			int before = used & ((1 << position) - 1);
+			int digit = position - Integer.bitCount(before);
+			used |= 1 << position;
+
+			rank = rank * (CubieCube.EDGES - i) + digit;
+			flips = flips << 1 | (edge & 1);
+		}
+
+		return (long) rank << EDGES | flips;
+	}
+
+	/**
+	 * Packed edges of a coordinate
+	 */
+	private static int getEdges(long index) {
+		int flips = (int) index & ((1 << EDGES) - 1);
+		int rank = (int) (index >>> EDGES);
+
+		// Free position to take for each edge, four bits each
+		int digits = 0;
+		for (int i = EDGES - 1; i >= 0; i--) {
+			digits |= (rank % (CubieCube.EDGES - i)) << (i * 4);
+			rank /= CubieCube.EDGES - i;
+		}
+
+		int edges = 0, used = 0;
+		for (int i = 0; i < EDGES; i++) {
+			int digit = (digits >>> (i * 4)) & 15;
+
+			int position = 0;
+			while ((used & (1 << position)) != 0 || digit-- > 0) {
+				position++;
+			}
+			used |= 1 << position;
+
+			int flip = (flips >>> (EDGES - 1 - i)) & 1;
+			edges |= (position * 2 + flip) << (i * BITS);
+		}
+
+		return edges;
+	}
+
+}
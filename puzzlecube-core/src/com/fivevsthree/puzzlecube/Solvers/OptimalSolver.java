@@ -0,0 +1,359 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fivevsthree.puzzlecube.Models.CubieCube;
+import com.fivevsthree.puzzlecube.Models.PuzzleState;
+import com.fivevsthree.puzzlecube.Models.Rotation;
+
+/**
+ * Finds a shortest solution of a 3x3 puzzle, counting face turns, with
+ * iterative deepening A*. Each pass searches every sequence of moves up to a
+ * bound, skipping any branch the pattern databases prove too long, see
+ * OptimalTables, and the bound goes up by one until a pass finds a solution.
+ * 
+ * The first two moves of each pass are split into tasks for a pool of
+ * threads. As soon as one task finds a solution the others stop, since any
+ * solution within the bound is as short as possible. A random position takes
+ * from seconds to minutes, so this is meant for servers and batch jobs, it
+ * needs nothing but the JVM. Use TwoPhaseSolver for quick solutions.
+ * 
+ * Given a table directory, the pattern databases are mapped from files there
+ * instead of being built in the heap every time the JVM starts.
+ */
+public class OptimalSolver {
+
+	/**
+	 * Every position can be solved in 20 face turns
+	 */
+	public static final int MAX_LENGTH = 20;
+
+	// Moves made before a branch is handed to a thread
+	private static final int SPLIT_DEPTH = 2;
+
+	private final OptimalTables tables;
+	private final int threads;
+
+	/**
+	 * Create a solver that uses every processor
+	 */
+	public OptimalSolver() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a solver with the tables built in the heap, see
+	 * OptimalTables.get()
+	 * 
+	 * @param threads
+	 *            number of threads to search with
+	 */
+	public OptimalSolver(int threads) {
+		this(OptimalTables.get(), threads);
+	}
+
+	/**
+	 * Create a solver with the tables mapped from their files, which are
+	 * built and written first if they are missing, see OptimalTables
+	 * 
+	 * @param tableDirectory
+	 *            directory of the table files
+	 * @param threads
+	 *            number of threads to search with
+	 */
+	public OptimalSolver(File tableDirectory, int threads) {
+		this(OptimalTables.get(tableDirectory, null), threads);
+	}
+
+	/**
+	 * @param tables
+	 *            pattern databases to search with
+	 * @param threads
+	 *            number of threads to search with
+	 */
+	public OptimalSolver(OptimalTables tables, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Invalid thread count "
+					+ threads);
+		}
+
+		this.tables = tables;
+		this.threads = threads;
+	}
+
+	/**
+	 * Find a shortest solution for a cube
+	 * 
+	 * @param cube
+	 *            position to solve, see CubieCube.isSolvable
+	 * @return move codes for a 3x3 puzzle, see Move
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while searching
+	 */
+	public byte[] solve(CubieCube cube) throws InterruptedException {
+		return solve(cube, Rotation.IDENTITY);
+	}
+
+	/**
+	 * Find a shortest solution for a 3x3 puzzle state. A puzzle that has been
+	 * turned as a whole is solved as it is.
+	 * 
+	 * @param state
+	 *            position to solve
+	 * @return move codes for the state
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while searching
+	 */
+	public byte[] solve(PuzzleState state) throws InterruptedException {
+		CubieCube cube = new CubieCube();
+		cube.set(state);
+
+		return solve(cube, CubieCube.getTurn(state));
+	}
+
+	private byte[] solve(CubieCube cube, int turn) throws InterruptedException {
+		if (!cube.isSolvable()) {
+			throw new IllegalArgumentException("The cube can not be solved");
+		}
+
+		Node start = new Node(tables, cube);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new DaemonThreadFactory("Optimal solver"));
+
+		try {
+			for (int bound = start.getDistance(MAX_LENGTH); bound <= MAX_LENGTH;
+					bound++) {
+				Pass pass = new Pass(bound);
+				if (pass.search(start, executor)) {
+					return tables.moveTables.getMoveCodes(pass.solution,
+							bound, turn);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		throw new IllegalStateException("No solution within " + MAX_LENGTH
+				+ " moves");
+	}
+
+	/**
+	 * Check if a face may follow another, see TwoPhaseSolver
+	 */
+	private static boolean isRedundant(int face, int lastFace) {
+		return face == lastFace || face == lastFace - 3;
+	}
+
+	/**
+	 * A position during the search, as the coordinates the pattern databases
+	 * are looked up with
+	 */
+	private static class Node {
+
+		private final OptimalTables tables;
+
+		int corners, twist;
+		final int[] edges = new int[2];
+
+		Node(OptimalTables tables) {
+			this.tables = tables;
+		}
+
+		Node(OptimalTables tables, CubieCube cube) {
+			this(tables);
+
+			corners = cube.getCornerPermutationRank();
+			twist = cube.getCornerTwistRank();
+			for (int i = 0; i < edges.length; i++) {
+				edges[i] = tables.edgeGroups[i].getEdges(cube);
+			}
+		}
+
+		void set(Node node) {
+			corners = node.corners;
+			twist = node.twist;
+			System.arraycopy(node.edges, 0, edges, 0, edges.length);
+		}
+
+		/**
+		 * Set this to a node after a face move
+		 */
+		void set(Node node, int move) {
+			corners = tables.moveTables.cornerMoves[node.corners
+					* TwoPhaseTables.MOVES + move];
+			twist = tables.moveTables.twistMoves[node.twist
+					* TwoPhaseTables.MOVES + move];
+			for (int i = 0; i < edges.length; i++) {
+				edges[i] = tables.edgeGroups[i].move(node.edges[i], move);
+			}
+		}
+
+		/**
+		 * Lower bound of the distance to solved, the edges are only looked up
+		 * while it is within a limit
+		 * 
+		 * @return the bound, or more than limit
+		 */
+		int getDistance(int limit) {
+			int distance = tables.cornerPruning.get(tables.corners.getIndex(
+					corners, twist));
+
+			for (int i = 0; i < edges.length && distance <= limit; i++) {
+				distance = Math.max(distance, tables.edgePruning[i]
+						.get(tables.edgeGroups[i].getIndex(edges[i])));
+			}
+
+			return distance;
+		}
+
+	}
+
+	/**
+	 * One pass of the search, for a single bound
+	 */
+	private class Pass {
+
+		final int bound;
+
+		// Face moves of the first solution found
+		final int[] solution = new int[MAX_LENGTH];
+
+		volatile boolean isSolved;
+
+		Pass(int bound) {
+			this.bound = bound;
+		}
+
+		/**
+		 * Hand every branch that may be short enough to a thread and wait
+		 * for them
+		 */
+		boolean search(Node start, ExecutorService executor)
+				throws InterruptedException {
+			List<Branch> branches = new ArrayList<Branch>();
+			addBranches(start, new int[SPLIT_DEPTH], 0, -1, branches);
+
+			List<Future<Void>> results = executor.invokeAll(branches);
+			for (Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Search failed",
+							e.getCause());
+				}
+			}
+
+			return isSolved;
+		}
+
+		private void addBranches(Node node, int[] prefix, int depth,
+				int lastFace, List<Branch> branches) {
+			if (depth == Math.min(SPLIT_DEPTH, bound)) {
+				branches.add(new Branch(this, node, prefix, depth, lastFace));
+				return;
+			}
+
+			for (int move = 0; move < TwoPhaseTables.MOVES; move++) {
+				int face = move / 3;
+				if (isRedundant(face, lastFace)) {
+					continue;
+				}
+
+				Node next = new Node(tables);
+				next.set(node, move);
+				if (next.getDistance(bound - depth - 1) > bound - depth - 1) {
+					continue;
+				}
+
+				prefix[depth] = move;
+				addBranches(next, prefix, depth + 1, face, branches);
+			}
+		}
+
+		synchronized void setSolution(int[] moves) {
+			if (!isSolved) {
+				System.arraycopy(moves, 0, solution, 0, bound);
+				isSolved = true;
+			}
+		}
+
+	}
+
+	/**
+	 * Depth first search below the first moves of a pass, with its own
+	 * stacks so branches can run at the same time
+	 */
+	private class Branch implements Callable<Void> {
+
+		private final Pass pass;
+		private final int start;
+		private final int lastFace;
+
+		private final Node[] nodes = new Node[MAX_LENGTH + 1];
+		private final int[] moves = new int[MAX_LENGTH];
+
+		Branch(Pass pass, Node node, int[] prefix, int start, int lastFace) {
+			this.pass = pass;
+			this.start = start;
+			this.lastFace = lastFace;
+
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = new Node(tables);
+			}
+			nodes[start].set(node);
+			System.arraycopy(prefix, 0, moves, 0, start);
+		}
+
+		@Override
+		public Void call() {
+			if (!pass.isSolved
+					&& search(start, pass.bound - start, lastFace)) {
+				pass.setSolution(moves);
+			}
+
+			return null;
+		}
+
+		private boolean search(int depth, int togo, int lastFace) {
+			if (togo == 0) {
+				return nodes[depth].getDistance(0) == 0;
+			}
+
+			// Another branch found a solution, or the solve was interrupted
+			// and shutdownNow interrupted this thread
+			if (pass.isSolved || Thread.currentThread().isInterrupted()) {
+				return false;
+			}
+
+			for (int move = 0; move < TwoPhaseTables.MOVES; move++) {
+				int face = move / 3;
+				if (isRedundant(face, lastFace)) {
+					continue;
+				}
+
+				Node next = nodes[depth + 1];
+				next.set(nodes[depth], move);
+				if (next.getDistance(togo - 1) > togo - 1) {
+					continue;
+				}
+
+				moves[depth] = move;
+				if (search(depth + 1, togo - 1, face)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Pattern databases of the optimal solver: the distance to solved of every
+ * position of the corners, and of each half of the edges. The distance of a
+ * cube is at least the largest of its three distances, see OptimalSolver.
+ * The corner table only has an entry for each class of symmetric positions,
+ * see CornerClassCoordinate.
+ * 
+ * The tables hold about 45 MB and take a while to build, so they are made
+ * once, the first time they are needed, and shared by every solver. Given a
+ * directory, each table is mapped from its file there, which takes no time
+ * however large the tables are, since only the pages a search touches are
+ * read. Any table without a valid file is built on every processor, see
+ * PatternDatabaseBuilder, and written to the directory for next time.
+ */
+public final class OptimalTables {
+
+	/**
+	 * Names of the table files in a directory
+	 */
+	public static final String CORNER_FILE = "corner-classes.pdb";
+	public static final String[] EDGE_FILES = { "edges0.pdb", "edges1.pdb" };
+
+	private static OptimalTables tables;
+
+	// Directory the shared tables were mapped from, null if built in the heap
+	private static File tablesDirectory;
+
+	final TwoPhaseTables moveTables;
+
+	final CornerClassCoordinate corners;
+	final EdgeGroupCoordinate[] edgeGroups = new EdgeGroupCoordinate[2];
+
+	final PruningTable cornerPruning;
+	final PruningTable[] edgePruning = new PruningTable[2];
+
+	/**
+	 * Tables shared by every solver, built in the heap the first time they
+	 * are needed unless they were already made from a directory
+	 */
+	public static OptimalTables get() {
+		return get(null, null);
+	}
+
+	/**
+	 * Tables shared by every solver, made the first time they are needed
+	 * 
+	 * @param directory
+	 *            directory to map the tables from and write built tables to,
+	 *            or null to build them in the heap unless they are already
+	 *            made
+	 * @param listener
+	 *            receives the progress if a table is built, or null
+	 * @throws IllegalStateException
+	 *             if the tables were already made in the heap or from another
+	 *             directory
+	 */
+	public static synchronized OptimalTables get(File directory,
+			BuildListener listener) {
+		if (directory != null) {
+			directory = directory.getAbsoluteFile();
+		}
+
+		if (tables == null) {
+			PatternDatabaseBuilder builder = new PatternDatabaseBuilder();
+			builder.setListener(listener);
+
+			try {
+				tables = new OptimalTables(directory, builder);
+				tablesDirectory = directory;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(
+						"Interrupted while building tables", e);
+			}
+		} else if (directory != null && !directory.equals(tablesDirectory)) {
+			throw new IllegalStateException("The tables were already made "
+					+ ((tablesDirectory != null) ? "from " + tablesDirectory
+							: "in the heap") + ", not from " + directory);
+		}
+
+		return tables;
+	}
+
+	private OptimalTables(File directory, PatternDatabaseBuilder builder)
+			throws InterruptedException {
+		moveTables = TwoPhaseTables.get();
+
+		corners = new CornerClassCoordinate(moveTables, CubeSymmetries.get());
+		cornerPruning = load(directory, CORNER_FILE, corners, builder);
+
+		for (int i = 0; i < edgeGroups.length; i++) {
+			edgeGroups[i] = new EdgeGroupCoordinate(moveTables, i
+					* EdgeGroupCoordinate.EDGES);
+			edgePruning[i] = load(directory, EDGE_FILES[i], edgeGroups[i],
+					builder);
+		}
+	}
+
+	/**
+	 * Map a table from its file, or build it and write the file if there is
+	 * no valid file
+	 */
+	private static PruningTable load(File directory, String name,
+			PatternCoordinate coordinate, PatternDatabaseBuilder builder)
+			throws InterruptedException {
+		if (directory == null) {
+			return builder.build(coordinate);
+		}
+
+		File file = new File(directory, name);
+		if (file.exists()) {
+			try {
+				PruningTable table = PruningTableFile.map(file);
+				if (table.getSize() == coordinate.getSize()) {
+					return table;
+				}
+			} catch (IOException e) {
+				// An old version or a damaged file is built again
+			}
+		}
+
+		PruningTable table = builder.build(coordinate);
+
+		// Write to a temporary file first, so a file that is cut short
+		// never has the table's name
+		File written = new File(directory, name + ".tmp");
+		try {
+			directory.mkdirs();
+			PruningTableFile.write(table, written);
+
+			file.delete();
+			if (!written.renameTo(file)) {
+				written.delete();
+			}
+		} catch (IOException e) {
+			// The table still works, it is built again next time
+			written.delete();
+		}
+
+		return table;
+	}
+
+	/**
+	 * Write the tables to a directory, see PruningTableFile
+	 * 
+	 * @throws IOException
+	 *             if a file can not be written
+	 */
+	public void write(File directory) throws IOException {
+		PruningTableFile.write(cornerPruning, new File(directory, CORNER_FILE));
+		for (int i = 0; i < edgePruning.length; i++) {
+			PruningTableFile.write(edgePruning[i], new File(directory,
+					EDGE_FILES[i]));
+		}
+	}
+
+}
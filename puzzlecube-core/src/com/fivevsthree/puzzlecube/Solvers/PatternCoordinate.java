@@ -0,0 +1,27 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+/**
+ * Numbers the positions of some of the pieces of a cube, for a pattern
+ * database that stores how far each position is from solved. The solved
+ * position is 0. PatternDatabaseBuilder calls a coordinate from several
+ * threads at once, so it may not change any state of its own.
+ */
+public interface PatternCoordinate {
+
+	/**
+	 * Number of coordinate values
+	 */
+	public long getSize();
+
+	/**
+	 * Coordinate after each face move, see TwoPhaseTables
+	 * 
+	 * @param index
+	 *            coordinate to move
+	 * @param neighbors
+	 *            gets the coordinate after each of the TwoPhaseTables.MOVES
+	 *            face moves
+	 */
+	public void getNeighbors(long index, long[] neighbors);
+
+}
@@ -0,0 +1,270 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fills a pattern database by breadth first search from the solved position
+ * on several threads, one distance at a time. Each distance is split into
+ * chunks of entries that the threads take in turn.
+ * 
+ * While few positions are known, each position found last time sets its
+ * unknown neighbors, with a compare and set on the long holding the entry.
+ * Once fewer positions are unknown than were found last time, it is quicker
+ * to check each unknown position for a neighbor found last time instead, and
+ * then a thread only writes the entries of its own chunks.
+ */
+public class PatternDatabaseBuilder {
+
+	// Entries a thread takes at a time, a whole number of longs
+	private static final int CHUNK = 1 << 16;
+
+	// A one in every four bits
+	private static final long NIBBLES = 0x1111111111111111L;
+
+	private final int threads;
+
+	private BuildListener listener;
+
+	/**
+	 * Create a builder that uses every processor
+	 */
+	public PatternDatabaseBuilder() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads to build with
+	 */
+	public PatternDatabaseBuilder(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Invalid thread count "
+					+ threads);
+		}
+
+		this.threads = threads;
+	}
+
+	public void setListener(BuildListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Find the distance of every position of a coordinate
+	 * 
+	 * @return the distances, distances of 15 or more are UNKNOWN
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while building
+	 */
+	public PruningTable build(PatternCoordinate coordinate)
+			throws InterruptedException {
+		long size = coordinate.getSize();
+		if (size < 1 || (size + 15) / 16 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid size " + size);
+		}
+
+		AtomicLongArray words = new AtomicLongArray((int) ((size + 15) / 16));
+		for (int i = 0; i < words.length(); i++) {
+			words.set(i, -1L);
+		}
+		words.set(0, -1L << 4);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new DaemonThreadFactory("Pattern database builder"));
+
+		try {
+			long filled = 1, found = 1;
+			for (int distance = 0; filled < size
+					&& distance + 1 < PruningTable.UNKNOWN; distance++) {
+				boolean isBackward = size - filled < found;
+
+				AtomicLong next = new AtomicLong();
+				List<Worker> workers = new ArrayList<Worker>();
+				for (int i = 0; i < threads; i++) {
+					workers.add(new Worker(coordinate, words, size, distance,
+							isBackward, next));
+				}
+
+				found = 0;
+				for (Future<Long> result : executor.invokeAll(workers)) {
+					try {
+						found += result.get();
+					} catch (ExecutionException e) {
+						throw new IllegalStateException("Build failed",
+								e.getCause());
+					}
+				}
+
+				if (found == 0) {
+					break;
+				}
+				filled += found;
+
+				if (listener != null) {
+					listener.distanceFilled(distance + 1, found, filled, size);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		long[] entries = new long[words.length()];
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = words.get(i);
+		}
+
+		return new PruningTable(size, entries);
+	}
+
+	/**
+	 * Check if any four bits of a long hold a value
+	 */
+	private static boolean hasEntry(long word, int value) {
+		long difference = word ^ (value * NIBBLES);
+		return ((difference - NIBBLES) & ~difference & (NIBBLES << 3)) != 0;
+	}
+
+	private static int getEntry(long entries, int shift) {
+		return (int) (entries >>> shift) & 15;
+	}
+
+	private static long setEntry(long entries, int shift, int value) {
+		return entries & ~(15L << shift) | (long) value << shift;
+	}
+
+	/**
+	 * Finds the positions at one distance in the chunks it takes
+	 */
+	private static class Worker implements Callable<Long> {
+
+		private final PatternCoordinate coordinate;
+		private final AtomicLongArray words;
+		private final long size;
+		private final int distance;
+		private final boolean isBackward;
+
+		// First entry of the next chunk to take
+		private final AtomicLong next;
+
+		private final long[] neighbors = new long[TwoPhaseTables.MOVES];
+
+		Worker(PatternCoordinate coordinate, AtomicLongArray words, long size,
+				int distance, boolean isBackward, AtomicLong next) {
+			this.coordinate = coordinate;
+			this.words = words;
+			this.size = size;
+			this.distance = distance;
+			this.isBackward = isBackward;
+			this.next = next;
+		}
+
+		@Override
+		public Long call() {
+			long found = 0;
+
+			long start;
+			while ((start = next.getAndAdd(CHUNK)) < size) {
+				long end = Math.min(start + CHUNK, size);
+				found += isBackward ? searchBackward(start, end)
+						: searchForward(start, end);
+			}
+
+			return found;
+		}
+
+		private long searchForward(long start, long end) {
+			long found = 0;
+
+			for (long index = start; index < end; index += 16) {
+				int word = (int) (index >>> 4);
+				long entries = words.get(word);
+				if (!hasEntry(entries, distance)) {
+					continue;
+				}
+
+				for (int i = 0; i < 16 && index + i < end; i++) {
+					if (getEntry(entries, i << 2) != distance) {
+						continue;
+					}
+
+					coordinate.getNeighbors(index + i, neighbors);
+					for (long neighbor : neighbors) {
+						if (setIfUnknown(neighbor, distance + 1)) {
+							found++;
+						}
+					}
+				}
+			}
+
+			return found;
+		}
+
+		private long searchBackward(long start, long end) {
+			long found = 0;
+
+			for (long index = start; index < end; index += 16) {
+				int word = (int) (index >>> 4);
+				long entries = words.get(word);
+				if (!hasEntry(entries, PruningTable.UNKNOWN)) {
+					continue;
+				}
+
+				long updated = entries;
+				for (int i = 0; i < 16 && index + i < end; i++) {
+					int shift = i << 2;
+					if (getEntry(entries, shift) != PruningTable.UNKNOWN) {
+						continue;
+					}
+
+					coordinate.getNeighbors(index + i, neighbors);
+					for (long neighbor : neighbors) {
+						if (get(neighbor) == distance) {
+							updated = setEntry(updated, shift, distance + 1);
+							found++;
+							break;
+						}
+					}
+				}
+
+				// No other thread writes this chunk
+				if (updated != entries) {
+					words.set(word, updated);
+				}
+			}
+
+			return found;
+		}
+
+		private int get(long index) {
+			long entries = words.get((int) (index >>> 4));
+			return getEntry(entries, (int) (index & 15) << 2);
+		}
+
+		private boolean setIfUnknown(long index, int value) {
+			int word = (int) (index >>> 4);
+			int shift = (int) (index & 15) << 2;
+
+			while (true) {
+				long entries = words.get(word);
+				if (getEntry(entries, shift) != PruningTable.UNKNOWN) {
+					return false;
+				}
+
+				long updated = setEntry(entries, shift, value);
+				if (words.compareAndSet(word, entries, updated)) {
+					return true;
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import java.nio.LongBuffer;
+
+/**
+ * Distances to the solved state, packed four bits to an entry and sixteen
+ * entries to a long. Distances of 15 or more are stored as UNKNOWN, which is
+ * also the value of every entry before the table is filled. A search only
+ * needs a lower bound, so the packing costs nothing but a shift.
+ * 
+ * A table is either held in an array or mapped read only from a file, see
+ * PruningTableFile.map.
+ */
+public class PruningTable {
+
+	public static final int UNKNOWN = 15;
+
+	private final long[] entries;
+	private final long size;
+
+	// Entries of a mapped table, null when they are in the array
+	private final LongBuffer mapped;
+
+	/**
+	 * Create a table with every entry UNKNOWN
+	 * 
+	 * @param size
+	 *            number of entries
+	 */
+	public PruningTable(long size) {
+		if (size < 0 || (size + 15) / 16 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid size " + size);
+		}
+
+		this.size = size;
+		entries = new long[(int) ((size + 15) / 16)];
+		mapped = null;
+		clear();
+	}
+
+	/**
+	 * Create a table from packed entries, see getWord
+	 */
+	PruningTable(long size, long[] entries) {
+		if (entries.length != (size + 15) / 16) {
+			throw new IllegalArgumentException("Invalid size " + size);
+		}
+
+		this.size = size;
+		this.entries = entries;
+		mapped = null;
+	}
+
+	/**
+	 * Create a read only table from packed entries in a buffer
+	 */
+	PruningTable(long size, LongBuffer mapped) {
+		if (mapped.capacity() != (size + 15) / 16) {
+			throw new IllegalArgumentException("Invalid size " + size);
+		}
+
+		this.size = size;
+		this.mapped = mapped;
+		entries = null;
+	}
+
+	/**
+	 * Set every entry to UNKNOWN
+	 */
+	public void clear() {
+		checkWritable();
+
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = -1L;
+		}
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Number of longs the entries are packed in
+	 */
+	int getWordCount() {
+		return (entries != null) ? entries.length : mapped.capacity();
+	}
+
+	/**
+	 * Sixteen packed entries, the first in the lowest four bits
+	 */
+	long getWord(int word) {
+		return (entries != null) ? entries[word] : mapped.get(word);
+	}
+
+	/**
+	 * Distance of an entry
+	 * 
+	 * @return 0 to 14, or UNKNOWN
+	 */
+	public int get(long index) {
+		long entry = getWord((int) (index >>> 4));
+		return (int) (entry >>> ((index & 15) << 2)) & 15;
+	}
+
+	/**
+	 * Set the distance of an entry
+	 * 
+	 * @param distance
+	 *            0 to UNKNOWN
+	 */
+	public void set(long index, int distance) {
+		checkWritable();
+
+		int word = (int) (index >>> 4);
+		int shift = (int) (index & 15) << 2;
+
+		entries[word] = entries[word] & ~(15L << shift)
+				| (long) distance << shift;
+	}
+
+	/**
+	 * Check if the entries can be changed
+	 * 
+	 * @return false if the table is mapped from a file
+	 */
+	public boolean isWritable() {
+		return entries != null;
+	}
+
+	private void checkWritable() {
+		if (entries == null) {
+			throw new IllegalStateException("The table is read only");
+		}
+	}
+
+}
@@ -0,0 +1,249 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes a PruningTable as a file, so tables that take a while to
+ * build only have to be built once. The file starts with a header of the
+ * magic number, the format version, the number of entries, a CRC32 of the
+ * packed entries and a CRC32 of the header before it, followed by the packed
+ * entries as big endian longs.
+ * 
+ * A file can be read into the heap, or mapped so that only the pages a
+ * search touches are ever read. Mapping only checks the header, since
+ * checking the entries would read all of them, so verify a file once after
+ * it is copied.
+ */
+public final class PruningTableFile {
+
+	public static final int MAGIC = 0x50435054;
+	public static final int VERSION = 2;
+
+	// Magic, version, size, entries checksum and header checksum
+	static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 8;
+
+	// Bytes of the header covered by its checksum
+	private static final int CHECKED_LENGTH = HEADER_LENGTH - 8;
+
+	private static final int BUFFER_LENGTH = 1 << 16;
+
+	private PruningTableFile() {
+	}
+
+	/**
+	 * Write a table to a file, replacing the file if it exists
+	 * 
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public static void write(PruningTable table, File file) throws IOException {
+		RandomAccessFile output = new RandomAccessFile(file, "rw");
+		try {
+			output.setLength(0);
+			FileChannel channel = output.getChannel();
+
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_LENGTH);
+			CRC32 checksum = new CRC32();
+
+			channel.position(HEADER_LENGTH);
+			for (int i = 0; i < table.getWordCount(); i++) {
+				if (!buffer.hasRemaining()) {
+					writeEntries(channel, buffer, checksum);
+				}
+				buffer.putLong(table.getWord(i));
+			}
+			writeEntries(channel, buffer, checksum);
+
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putLong(table.getSize());
+			buffer.putLong(checksum.getValue());
+
+			checksum.reset();
+			checksum.update(buffer.array(), 0, CHECKED_LENGTH);
+			buffer.putLong(checksum.getValue());
+
+			buffer.flip();
+			channel.position(0);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	private static void writeEntries(FileChannel channel, ByteBuffer buffer,
+			CRC32 checksum) throws IOException {
+		checksum.update(buffer.array(), 0, buffer.position());
+
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Read a table written by write into the heap
+	 * 
+	 * @throws IOException
+	 *             if the file can not be read, is not a table or does not
+	 *             match its checksums
+	 */
+	public static PruningTable read(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = input.getChannel();
+			Header header = readHeader(channel, file);
+
+			long[] entries = new long[header.words];
+			readEntries(channel, file, header, entries);
+
+			return new PruningTable(header.size, entries);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Map a table written by write, read only. Only the header is read, the
+	 * operating system reads each page of entries the first time it is used
+	 * and may drop it again when memory is short.
+	 * 
+	 * @throws IOException
+	 *             if the file can not be mapped or does not have a valid
+	 *             header
+	 */
+	public static PruningTable map(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = input.getChannel();
+			Header header = readHeader(channel, file);
+
+			// The mapping stays valid after the file is closed
+			ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY,
+					HEADER_LENGTH, header.words * 8L);
+			LongBuffer entries = bytes.order(ByteOrder.BIG_ENDIAN)
+					.asLongBuffer();
+
+			return new PruningTable(header.size, entries);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Check every entry of a file against its checksum
+	 * 
+	 * @throws IOException
+	 *             if the file can not be read, is not a table or does not
+	 *             match its checksums
+	 */
+	public static void verify(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = input.getChannel();
+			readEntries(channel, file, readHeader(channel, file), null);
+		} finally {
+			input.close();
+		}
+	}
+
+	private static Header readHeader(FileChannel channel, File file)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+		channel.position(0);
+		readFully(channel, buffer);
+
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException(file + " is not a pruning table");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException(file + " has unknown version " + version);
+		}
+
+		Header header = new Header();
+		header.size = buffer.getLong();
+		header.checksum = buffer.getLong();
+
+		CRC32 checksum = new CRC32();
+		checksum.update(buffer.array(), 0, CHECKED_LENGTH);
+		if (buffer.getLong() != checksum.getValue()) {
+			throw new IOException(file + " has a damaged header");
+		}
+
+		long words = (header.size + 15) / 16;
+		if (header.size < 0 || channel.size() != HEADER_LENGTH + words * 8) {
+			throw new IOException(file + " has the wrong length");
+		}
+
+		// A buffer holds at most 2 GB
+		if (words > Integer.MAX_VALUE / 8) {
+			throw new IOException(file + " is too large");
+		}
+		header.words = (int) words;
+
+		return header;
+	}
+
+	/**
+	 * Read the entries after the header and check them
+	 * 
+	 * @param entries
+	 *            gets the entries, or null to only check them
+	 */
+	private static void readEntries(FileChannel channel, File file,
+			Header header, long[] entries) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_LENGTH);
+		CRC32 checksum = new CRC32();
+
+		for (int i = 0; i < header.words;) {
+			buffer.clear();
+			long remaining = (header.words - i) * 8L;
+			buffer.limit((int) Math.min(BUFFER_LENGTH, remaining));
+			readFully(channel, buffer);
+			checksum.update(buffer.array(), 0, buffer.limit());
+
+			if (entries != null) {
+				while (buffer.hasRemaining()) {
+					entries[i++] = buffer.getLong();
+				}
+			} else {
+				i += buffer.limit() / 8;
+			}
+		}
+
+		if (checksum.getValue() != header.checksum) {
+			throw new IOException(file + " does not match its checksum");
+		}
+	}
+
+	/**
+	 * Fill a buffer up to its limit and flip it for reading
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+		buffer.flip();
+	}
+
+	private static class Header {
+		long size;
+		long checksum;
+		int words;
+	}
+
+}
@@ -0,0 +1,426 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import java.util.Random;
+
+import com.fivevsthree.puzzlecube.Models.CubeState;
+import com.fivevsthree.puzzlecube.Models.CubieCube;
+import com.fivevsthree.puzzlecube.Models.CubieRank;
+import com.fivevsthree.puzzlecube.Models.Move;
+import com.fivevsthree.puzzlecube.Models.PuzzleState;
+import com.fivevsthree.puzzlecube.Models.Rotation;
+
+/**
+ * Solves a 3x3 puzzle with Kociemba's two-phase algorithm. Phase 1 turns any
+ * position into one that U, D and half turns of the other faces can solve,
+ * and phase 2 solves it with only those moves. Each phase is an iterative
+ * deepening search that skips any branch its pruning tables prove too long,
+ * see TwoPhaseTables.
+ * 
+ * Phase 1 is tried on six views of the cube in turn, the cube and its
+ * inverse each looked at from three sides of the URF corner, since a short
+ * phase 1 in any of them gives a solution. The first solution found within
+ * the length limit is returned. A solver keeps its search stacks between
+ * calls, so each thread needs its own, but the tables are shared.
+ */
+public class TwoPhaseSolver {
+
+	/**
+	 * Face turns a solution may have unless another limit is given
+	 */
+	public static final int DEFAULT_LENGTH = 21;
+
+	/**
+	 * Longest limit a search accepts
+	 */
+	public static final int MAX_LENGTH = 30;
+
+	/*
+	 * Longest phase 2 tried after a phase 1 solution. Long phase 2 searches
+	 * are slow and seldom needed, a longer phase 1 usually finds a shorter
+	 * phase 2.
+	 */
+	private static final int MAX_PHASE2_LENGTH = 13;
+
+	// The cube and its inverse from three sides
+	private static final int VIEWS = 6;
+
+	private final TwoPhaseTables tables;
+
+	// Coordinates of each view of the cube being solved
+	private final int[] startTwists = new int[VIEWS];
+	private final int[] startFlips = new int[VIEWS];
+	private final int[] startSlices = new int[VIEWS];
+	private final int[] startCorners = new int[VIEWS];
+	private final byte[][] startEdges = new byte[VIEWS][CubieCube.EDGES];
+
+	// Coordinates after each move of the search, indexed by depth
+	private final int[] twists = new int[MAX_LENGTH + 1];
+	private final int[] flips = new int[MAX_LENGTH + 1];
+	private final int[] slices = new int[MAX_LENGTH + 1];
+	private final int[] corners = new int[MAX_LENGTH + 1];
+	private final int[] edges = new int[MAX_LENGTH + 1];
+
+	// Face move made at each depth
+	private final int[] moves = new int[MAX_LENGTH];
+
+	// Solution of the cube itself, in face moves
+	private final int[] solution = new int[MAX_LENGTH];
+
+	// Edges after phase 1
+	private final byte[] phase2Edges = new byte[CubieCube.EDGES];
+	private final byte[] movedEdges = new byte[CubieCube.EDGES];
+
+	private int view;
+	private int maxLength;
+	private int solutionLength;
+
+	public TwoPhaseSolver() {
+		tables = TwoPhaseTables.get();
+	}
+
+	/**
+	 * Find a solution for a cube
+	 * 
+	 * @param cube
+	 *            position to solve, see CubieCube.isSolvable
+	 * @param maxLength
+	 *            most face turns the solution may have, a half turn is one
+	 * @return move codes for a 3x3 puzzle, see Move, or null if no solution
+	 *         was found within the limit
+	 */
+	public byte[] solve(CubieCube cube, int maxLength) {
+		if (!solveFaceMoves(cube, maxLength)) {
+			return null;
+		}
+
+		return tables.getMoveCodes(solution, solutionLength, Rotation.IDENTITY);
+	}
+
+	/**
+	 * Find a solution for a 3x3 puzzle state. A puzzle that has been turned
+	 * as a whole is solved as it is, the solution turns the same faces as it
+	 * would on the puzzle before it was turned.
+	 * 
+	 * @param state
+	 *            position to solve
+	 * @param maxLength
+	 *            most face turns the solution may have, a half turn is one
+	 * @return move codes for the state, or null if no solution was found
+	 *         within the limit
+	 */
+	public byte[] solve(PuzzleState state, int maxLength) {
+		CubieCube cube = new CubieCube();
+		cube.set(state);
+
+		if (!solveFaceMoves(cube, maxLength)) {
+			return null;
+		}
+
+		return tables.getMoveCodes(solution, solutionLength,
+				CubieCube.getTurn(state));
+	}
+
+	/**
+	 * Find a solution for a snapshot of a 3x3 puzzle, see solve(PuzzleState,
+	 * int). Snapshots do not change, so one can be solved on another thread
+	 * while the puzzle keeps moving.
+	 * 
+	 * @param state
+	 *            position to solve
+	 * @param maxLength
+	 *            most face turns the solution may have, a half turn is one
+	 * @return move codes for the state, or null if no solution was found
+	 *         within the limit
+	 */
+	public byte[] solve(CubeState state, int maxLength) {
+		CubieCube cube = new CubieCube();
+		state.get(cube);
+
+		if (!solveFaceMoves(cube, maxLength)) {
+			return null;
+		}
+
+		return tables.getMoveCodes(solution, solutionLength, state.getTurn());
+	}
+
+	/**
+	 * Scramble to a random position, every solvable position is equally
+	 * likely
+	 * 
+	 * @param random
+	 *            source of random numbers, seeded to repeat a scramble
+	 * @return move codes for a 3x3 puzzle that take the solved puzzle to the
+	 *         position, never null
+	 * @throws IllegalStateException
+	 *             if no solution is found, which would mean the tables are
+	 *             wrong
+	 */
+	public byte[] generateScramble(Random random) {
+		CubieCube cube = new CubieCube();
+		cube.setCornerTwistRank(random.nextInt(CubieRank.CORNER_TWISTS));
+		cube.setEdgeFlipRank(random.nextInt(CubieRank.EDGE_FLIPS));
+		cube.setCornerPermutationRank(random
+				.nextInt(CubieRank.CORNER_PERMUTATIONS));
+
+		do {
+			cube.setEdgePermutationRank(random
+					.nextInt(CubieRank.EDGE_PERMUTATIONS));
+		} while (!cube.isSolvable());
+
+		// Every position has a solution well within MAX_LENGTH
+		byte[] solution = solve(cube, MAX_LENGTH);
+		if (solution == null) {
+			throw new IllegalStateException("No solution within "
+					+ MAX_LENGTH + " moves");
+		}
+
+		// Undo the solution
+		byte[] scramble = new byte[solution.length];
+		for (int i = 0; i < solution.length; i++) {
+			int move = solution[solution.length - 1 - i];
+			scramble[i] = (byte) Move.inverse(move);
+		}
+
+		return scramble;
+	}
+
+	private boolean solveFaceMoves(CubieCube cube, int maxLength) {
+		if (!cube.isSolvable()) {
+			throw new IllegalArgumentException("The cube can not be solved");
+		}
+		if (maxLength < 0 || maxLength > MAX_LENGTH) {
+			throw new IllegalArgumentException("Invalid length " + maxLength);
+		}
+
+		this.maxLength = maxLength;
+
+		CubieCube turned = new CubieCube();
+		CubieCube inverse = new CubieCube();
+		turned.set(cube);
+
+		int minDistance = MAX_LENGTH;
+		for (int i = 0; i < VIEWS; i += 2) {
+			inverse.setInverse(turned);
+			minDistance = Math.min(minDistance, setView(i, turned));
+			minDistance = Math.min(minDistance, setView(i + 1, inverse));
+
+			tables.conjugate(turned);
+		}
+
+		for (int length = minDistance; length <= maxLength; length++) {
+			for (view = 0; view < VIEWS; view++) {
+				twists[0] = startTwists[view];
+				flips[0] = startFlips[view];
+				slices[0] = startSlices[view];
+				corners[0] = startCorners[view];
+
+				if (getPhase1Distance(twists[0], flips[0], slices[0]) <= length
+						&& searchPhase1(0, length, -1)) {
+					setSolution();
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Remember the coordinates of a view of the cube
+	 * 
+	 * @return lowest number of phase 1 moves
+	 */
+	private int setView(int view, CubieCube cube) {
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			startEdges[view][i] = (byte) cube.getEdge(i);
+		}
+
+		startTwists[view] = cube.getCornerTwistRank();
+		startFlips[view] = cube.getEdgeFlipRank();
+		startSlices[view] = tables.getSlice(startEdges[view]);
+		startCorners[view] = cube.getCornerPermutationRank();
+
+		return getPhase1Distance(startTwists[view], startFlips[view],
+				startSlices[view]);
+	}
+
+	/**
+	 * Turn the moves that solve the current view into moves that solve the
+	 * cube
+	 */
+	private void setSolution() {
+		boolean isInverse = (view & 1) != 0;
+
+		for (int i = 0; i < solutionLength; i++) {
+			int move = isInverse ? moves[solutionLength - 1 - i] : moves[i];
+
+			// The moves of the inverse are undone in reverse
+			int power = isInverse ? 2 - move % 3 : move % 3;
+
+			int face = move / 3;
+			for (int turn = 0; turn < view / 2; turn++) {
+				face = getUrfFaceBefore(face);
+			}
+
+			solution[i] = face * 3 + power;
+		}
+	}
+
+	/**
+	 * Face that becomes a face when the cube is turned around the URF corner
+	 */
+	private int getUrfFaceBefore(int face) {
+		for (int before = 0; before < 6; before++) {
+			if (tables.getUrfFace(before) == face) {
+				return before;
+			}
+		}
+
+		return face;
+	}
+
+	private int getPhase1Distance(int twist, int flip, int slice) {
+		int position = slice / TwoPhaseTables.SLICE_ORDERS;
+
+		int distance = Math.max(
+				tables.twistSlicePruning.get(twist * TwoPhaseTables.SLICES
+						+ position),
+				tables.flipSlicePruning.get(flip * TwoPhaseTables.SLICES
+						+ position));
+
+		return Math.max(distance,
+				tables.twistFlipPruning.get(twist * TwoPhaseTables.FLIPS
+						+ flip));
+	}
+
+	private int getPhase2Distance(int corner, int edge, int slice) {
+		return Math.max(tables.cornerSlicePruning.get(corner
+				* TwoPhaseTables.SLICE_ORDERS + slice),
+				tables.edgeSlicePruning.get(edge * TwoPhaseTables.SLICE_ORDERS
+						+ slice));
+	}
+
+	/**
+	 * Check if a face may follow another. Turning the same face twice is one
+	 * turn, and opposite faces are only tried in one order.
+	 */
+	private static boolean isRedundant(int face, int lastFace) {
+		return face == lastFace || face == lastFace - 3;
+	}
+
+	private boolean searchPhase1(int depth, int togo, int lastFace) {
+		if (togo == 0) {
+			// A phase 2 move at the end would be part of a shorter phase 1
+			if (depth > 0 && isPhase2Move(moves[depth - 1])) {
+				return false;
+			}
+
+			return startPhase2(depth);
+		}
+
+		for (int face = 0; face < 6; face++) {
+			if (isRedundant(face, lastFace)) {
+				continue;
+			}
+
+			for (int move = face * 3; move < face * 3 + 3; move++) {
+				int twist = tables.twistMoves[twists[depth]
+						* TwoPhaseTables.MOVES + move];
+				int flip = tables.flipMoves[flips[depth] * TwoPhaseTables.MOVES
+						+ move];
+				int slice = tables.sliceMoves[slices[depth]
+						* TwoPhaseTables.MOVES + move];
+
+				if (getPhase1Distance(twist, flip, slice) > togo - 1) {
+					continue;
+				}
+
+				moves[depth] = move;
+				twists[depth + 1] = twist;
+				flips[depth + 1] = flip;
+				slices[depth + 1] = slice;
+				corners[depth + 1] = tables.cornerMoves[corners[depth]
+						* TwoPhaseTables.MOVES + move];
+
+				if (searchPhase1(depth + 1, togo - 1, face)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean isPhase2Move(int move) {
+		int face = move / 3;
+		return face == 0 || face == 3 || move % 3 == 1;
+	}
+
+	private boolean startPhase2(int depth) {
+		int maxPhase2 = Math.min(MAX_PHASE2_LENGTH, maxLength - depth);
+
+		// The corners and middle layer rule out most phase 1 solutions
+		if (tables.cornerSlicePruning.get(corners[depth]
+				* TwoPhaseTables.SLICE_ORDERS + slices[depth]) > maxPhase2) {
+			return false;
+		}
+
+		// Edges are only tracked as coordinates in phase 2
+		System.arraycopy(startEdges[view], 0, phase2Edges, 0, CubieCube.EDGES);
+		for (int i = 0; i < depth; i++) {
+			tables.applyEdges(phase2Edges, moves[i], movedEdges);
+			System.arraycopy(movedEdges, 0, phase2Edges, 0, CubieCube.EDGES);
+		}
+		edges[depth] = CubieRank.rankPermutation(phase2Edges, 8);
+
+		int distance = getPhase2Distance(corners[depth], edges[depth],
+				slices[depth]);
+		int lastFace = (depth > 0) ? moves[depth - 1] / 3 : -1;
+
+		for (int length = distance; length <= maxPhase2; length++) {
+			if (searchPhase2(depth, length, lastFace)) {
+				solutionLength = depth + length;
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean searchPhase2(int depth, int togo, int lastFace) {
+		if (togo == 0) {
+			return corners[depth] == 0 && edges[depth] == 0
+					&& slices[depth] == 0;
+		}
+
+		for (int move : TwoPhaseTables.PHASE2_MOVES) {
+			int face = move / 3;
+			if (isRedundant(face, lastFace)) {
+				continue;
+			}
+
+			int corner = tables.cornerMoves[corners[depth]
+					* TwoPhaseTables.MOVES + move];
+			int edge = tables.edge8Moves[edges[depth] * TwoPhaseTables.MOVES
+					+ move];
+			int slice = tables.sliceMoves[slices[depth] * TwoPhaseTables.MOVES
+					+ move];
+
+			if (getPhase2Distance(corner, edge, slice) > togo - 1) {
+				continue;
+			}
+
+			moves[depth] = move;
+			corners[depth + 1] = corner;
+			edges[depth + 1] = edge;
+			slices[depth + 1] = slice;
+
+			if (searchPhase2(depth + 1, togo - 1, face)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+}
@@ -0,0 +1,556 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+import com.fivevsthree.puzzlecube.Models.CubeState;
+import com.fivevsthree.puzzlecube.Models.CubieCube;
+import com.fivevsthree.puzzlecube.Models.CubieRank;
+import com.fivevsthree.puzzlecube.Models.Move;
+import com.fivevsthree.puzzlecube.Models.Notation;
+import com.fivevsthree.puzzlecube.Models.PuzzleGeometry;
+import com.fivevsthree.puzzlecube.Models.PuzzleState;
+import com.fivevsthree.puzzlecube.Models.Rotation;
+
+/**
+ * Move and pruning tables of the two-phase solver. The tables are built once
+ * from the puzzle model, by turning the faces of a PuzzleState and reading
+ * the corners and edges back with CubieCube, and are never changed after, so
+ * any number of solvers on any threads can share them.
+ * 
+ * Faces are numbered U, R, F, D, L, B and a face move is face * 3 + power,
+ * where power 0 is a clockwise quarter turn, 1 a half turn and 2 a counter
+ * clockwise quarter turn.
+ * 
+ * Phase 1 coordinates are the corner twist, the edge flip and the positions
+ * of the four middle layer edges FR, FL, BL and BR. Phase 2 coordinates are
+ * the corner permutation, the permutation of the other eight edges and the
+ * order of the middle layer edges, which phase 1 leaves in the middle layer.
+ * 
+ * The pruning tables are not reduced by symmetry, see CubeSymmetries.
+ * Symmetry is what lets phase 1 use one table of flip, slice and twist
+ * together, but that still has 64430 flip and slice classes times 2187
+ * twists, about 70 MB, which is too much for a phone. The pair tables here
+ * hold about 4 MB in all, and reducing the flip and slice table to classes
+ * would only save 0.5 MB while adding a symmetry lookup to every node of the
+ * search.
+ */
+public final class TwoPhaseTables {
+
+	public static final int MOVES = 18;
+
+	public static final int TWISTS = CubieRank.CORNER_TWISTS;
+	public static final int FLIPS = CubieRank.EDGE_FLIPS;
+
+	// Ways to place the four middle layer edges, and to order them
+	public static final int SLICES = 495;
+	public static final int SLICE_ORDERS = 24;
+
+	public static final int CORNER_PERMUTATIONS = CubieRank.CORNER_PERMUTATIONS;
+
+	// Permutations of the eight top and bottom layer edges
+	public static final int EDGE8_PERMUTATIONS = 40320;
+
+	/**
+	 * Face moves that keep the phase 2 group, U, D and half turns of the rest
+	 */
+	static final int[] PHASE2_MOVES = { 0, 1, 2, 4, 7, 9, 10, 11, 13, 16 };
+
+	private static final String FACES = "URFDLB";
+
+	// First middle layer edge, FR
+	private static final int SLICE_EDGE = 8;
+
+	// @formatter:off
+
+	// Turn of the whole cube a third of the way around the corner between
+	// U, R and F, which takes U to R, R to F and F to U
+	private static final byte[] URF_CORNERS = { 0, 4, 5, 1, 3, 7, 6, 2 };
+	private static final byte[] URF_TWISTS = { 1, 2, 1, 2, 2, 1, 2, 1 };
+	private static final byte[] URF_EDGES = { 1, 8, 5, 9, 3, 11, 7, 10, 0, 4,
+			6, 2 };
+	private static final byte[] URF_FLIPS = { 1, 0, 1, 0, 1, 0, 1, 0, 1, 1,
+			1, 1 };
+
+	// @formatter:on
+
+	private static TwoPhaseTables tables;
+
+	// Clockwise quarter turn code of each face, see Move
+	private final int[] faceMoves = new int[6];
+
+	// Piece that each face move brings to each position, and the twist or
+	// flip it adds, indexed by move * pieces + position
+	private final byte[] cornerFrom = new byte[MOVES * CubieCube.CORNERS];
+	private final byte[] cornerTwist = new byte[MOVES * CubieCube.CORNERS];
+	private final byte[] edgeFrom = new byte[MOVES * CubieCube.EDGES];
+	private final byte[] edgeFlip = new byte[MOVES * CubieCube.EDGES];
+
+	// Clockwise quarter turn code of each face of a puzzle that has been
+	// turned as a whole, indexed by turn * 6 + face
+	private final byte[] turnedMoves = new byte[Rotation.COUNT * 6];
+
+	// The turn around the URF corner and its inverse
+	private final CubieCube urf = new CubieCube();
+	private final CubieCube urfInverse = new CubieCube();
+
+	// Face that each face becomes when a cube is turned around the URF corner
+	private final int[] urfFaces = new int[6];
+
+	// Rank of each set of four positions and the set with each rank
+	private final short[] sliceRanks = new short[1 << CubieCube.EDGES];
+	private final short[] sliceMasks = new short[SLICES];
+
+	// Coordinate after each move, indexed by coordinate * MOVES + move
+	final char[] twistMoves = new char[TWISTS * MOVES];
+	final char[] flipMoves = new char[FLIPS * MOVES];
+	final char[] sliceMoves = new char[SLICES * SLICE_ORDERS * MOVES];
+	final char[] cornerMoves = new char[CORNER_PERMUTATIONS * MOVES];
+
+	// Only the phase 2 moves are filled in
+	final char[] edge8Moves = new char[EDGE8_PERMUTATIONS * MOVES];
+
+	// Distance to the end of phase 1 or 2 for a pair of coordinates
+	final PruningTable twistSlicePruning;
+	final PruningTable flipSlicePruning;
+	final PruningTable twistFlipPruning;
+	final PruningTable cornerSlicePruning;
+	final PruningTable edgeSlicePruning;
+
+	/**
+	 * Tables shared by every solver, built the first time they are needed
+	 */
+	public static synchronized TwoPhaseTables get() {
+		if (tables == null) {
+			tables = new TwoPhaseTables();
+		}
+
+		return tables;
+	}
+
+	private TwoPhaseTables() {
+		buildFaceMoves();
+		buildTurnedMoves();
+		buildUrfTurn();
+		buildSliceRanks();
+		buildMoveTables();
+
+		char[] slicePositionMoves = new char[SLICES * MOVES];
+		for (int slice = 0; slice < SLICES; slice++) {
+			for (int move = 0; move < MOVES; move++) {
+				int position = sliceMoves[slice * SLICE_ORDERS * MOVES + move];
+				slicePositionMoves[slice * MOVES + move] = (char) (position
+						/ SLICE_ORDERS);
+			}
+		}
+
+		int[] allMoves = new int[MOVES];
+		for (int move = 0; move < MOVES; move++) {
+			allMoves[move] = move;
+		}
+
+		twistSlicePruning = buildPruning(twistMoves, TWISTS,
+				slicePositionMoves, SLICES, allMoves);
+		flipSlicePruning = buildPruning(flipMoves, FLIPS, slicePositionMoves,
+				SLICES, allMoves);
+		twistFlipPruning = buildPruning(twistMoves, TWISTS, flipMoves, FLIPS,
+				allMoves);
+
+		// The middle layer edges stay in the middle layer, so their
+		// coordinate is just their order
+		cornerSlicePruning = buildPruning(cornerMoves, CORNER_PERMUTATIONS,
+				sliceMoves, SLICE_ORDERS, PHASE2_MOVES);
+		edgeSlicePruning = buildPruning(edge8Moves, EDGE8_PERMUTATIONS,
+				sliceMoves, SLICE_ORDERS, PHASE2_MOVES);
+	}
+
+	/**
+	 * Read what each face move does to the corners and edges off the puzzle
+	 * model
+	 */
+	private void buildFaceMoves() {
+		PuzzleState state = new PuzzleState(3);
+		CubieCube cubies = new CubieCube();
+
+		for (int face = 0; face < 6; face++) {
+			faceMoves[face] = Notation.compile(FACES.substring(face, face + 1),
+					3)[0];
+
+			for (int power = 0; power < 3; power++) {
+				int move = face * 3 + power;
+
+				state.reset();
+				for (int i = 0; i <= power; i++) {
+					state.apply(faceMoves[face]);
+				}
+				cubies.set(state);
+
+				for (int i = 0; i < CubieCube.CORNERS; i++) {
+					cornerFrom[move * CubieCube.CORNERS + i] = (byte) cubies
+							.getCorner(i);
+					cornerTwist[move * CubieCube.CORNERS + i] = (byte) cubies
+							.getCornerTwist(i);
+				}
+				for (int i = 0; i < CubieCube.EDGES; i++) {
+					edgeFrom[move * CubieCube.EDGES + i] = (byte) cubies
+							.getEdge(i);
+					edgeFlip[move * CubieCube.EDGES + i] = (byte) cubies
+							.getEdgeFlip(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the move code that turns each face of a puzzle that has been turned
+	 * as a whole, by comparing what the moves do to CubeState
+	 */
+	private void buildTurnedMoves() {
+		int moveCount = PuzzleGeometry.get(3).getMoveCount();
+
+		CubieCube solved = new CubieCube();
+		CubieCube moved = new CubieCube();
+		PuzzleState state = new PuzzleState(3);
+
+		for (int face = 0; face < 6; face++) {
+			state.reset();
+			state.apply(faceMoves[face]);
+			moved.set(state);
+
+			for (int turn = 0; turn < Rotation.COUNT; turn++) {
+				CubeState start = CubeState.of(solved, turn);
+				CubeState target = CubeState.of(moved, turn);
+
+				for (int code = 0; code < moveCount; code++) {
+					if (start.applyMove(code).equals(target)) {
+						turnedMoves[turn * 6 + face] = (byte) code;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the face each face becomes when the cube is turned around the URF
+	 * corner, which also checks the turn against the face moves
+	 */
+	private void buildUrfTurn() {
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			urf.setCorner(i, URF_CORNERS[i], URF_TWISTS[i]);
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			urf.setEdge(i, URF_EDGES[i], URF_FLIPS[i]);
+		}
+		urfInverse.setInverse(urf);
+
+		CubieCube face = new CubieCube();
+		CubieCube turned = new CubieCube();
+
+		for (int from = 0; from < 6; from++) {
+			setFaceMove(from * 3, face);
+			turned.set(face);
+			conjugate(turned);
+
+			urfFaces[from] = -1;
+			for (int to = 0; to < 6; to++) {
+				setFaceMove(to * 3, face);
+				if (isSame(face, turned)) {
+					urfFaces[from] = to;
+				}
+			}
+
+			if (urfFaces[from] < 0) {
+				throw new IllegalStateException("No face matches face "
+						+ FACES.charAt(from) + " turned around URF");
+			}
+		}
+	}
+
+	private void setFaceMove(int move, CubieCube cube) {
+		for (int i = 0; i < CubieCube.CORNERS; i++) {
+			cube.setCorner(i, cornerFrom[move * CubieCube.CORNERS + i],
+					cornerTwist[move * CubieCube.CORNERS + i]);
+		}
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			cube.setEdge(i, edgeFrom[move * CubieCube.EDGES + i],
+					edgeFlip[move * CubieCube.EDGES + i]);
+		}
+	}
+
+	private static boolean isSame(CubieCube a, CubieCube b) {
+		return a.getCornerPermutationRank() == b.getCornerPermutationRank()
+				&& a.getCornerTwistRank() == b.getCornerTwistRank()
+				&& a.getEdgePermutationRank() == b.getEdgePermutationRank()
+				&& a.getEdgeFlipRank() == b.getEdgeFlipRank();
+	}
+
+	/**
+	 * Look at a cube from the corner between U, R and F turned a third of
+	 * the way around. A solution of the turned cube solves the cube with each
+	 * face changed back, see getUrfFace.
+	 * 
+	 * @param cube
+	 *            cube to turn
+	 */
+	void conjugate(CubieCube cube) {
+		CubieCube result = new CubieCube();
+		result.set(urf);
+		result.multiply(cube);
+		result.multiply(urfInverse);
+
+		cube.set(result);
+	}
+
+	/**
+	 * Face a face becomes when the cube is turned by conjugate
+	 */
+	int getUrfFace(int face) {
+		return urfFaces[face];
+	}
+
+	/**
+	 * Number every set of four edge positions, with the middle layer first
+	 */
+	private void buildSliceRanks() {
+		int solved = ((1 << 4) - 1) << SLICE_EDGE;
+
+		sliceMasks[0] = (short) solved;
+		int rank = 1;
+		for (int mask = 0; mask < 1 << CubieCube.EDGES; mask++) {
+			if (Integer.bitCount(mask) == 4 && mask != solved) {
+				sliceMasks[rank++] = (short) mask;
+			}
+		}
+
+		for (rank = 0; rank < SLICES; rank++) {
+			sliceRanks[sliceMasks[rank]] = (short) rank;
+		}
+	}
+
+	private void buildMoveTables() {
+		byte[] pieces = new byte[CubieCube.EDGES];
+		byte[] orientations = new byte[CubieCube.EDGES];
+		byte[] moved = new byte[CubieCube.EDGES];
+
+		for (int twist = 0; twist < TWISTS; twist++) {
+			CubieRank.unrankOrientation(twist, orientations, CubieCube.CORNERS,
+					3);
+			for (int move = 0; move < MOVES; move++) {
+				for (int i = 0; i < CubieCube.CORNERS; i++) {
+					int index = move * CubieCube.CORNERS + i;
+					moved[i] = (byte) ((orientations[cornerFrom[index]]
+							+ cornerTwist[index]) % 3);
+				}
+				twistMoves[twist * MOVES + move] = (char) CubieRank
+						.rankOrientation(moved, CubieCube.CORNERS, 3);
+			}
+		}
+
+		for (int flip = 0; flip < FLIPS; flip++) {
+			CubieRank.unrankOrientation(flip, orientations, CubieCube.EDGES, 2);
+			for (int move = 0; move < MOVES; move++) {
+				for (int i = 0; i < CubieCube.EDGES; i++) {
+					int index = move * CubieCube.EDGES + i;
+					moved[i] = (byte) (orientations[edgeFrom[index]]
+							^ edgeFlip[index]);
+				}
+				flipMoves[flip * MOVES + move] = (char) CubieRank
+						.rankOrientation(moved, CubieCube.EDGES, 2);
+			}
+		}
+
+		for (int slice = 0; slice < SLICES * SLICE_ORDERS; slice++) {
+			setSlice(slice, pieces);
+			for (int move = 0; move < MOVES; move++) {
+				applyEdges(pieces, move, moved);
+				sliceMoves[slice * MOVES + move] = (char) getSlice(moved);
+			}
+		}
+
+		for (int corners = 0; corners < CORNER_PERMUTATIONS; corners++) {
+			CubieRank.unrankPermutation(corners, pieces, CubieCube.CORNERS);
+			for (int move = 0; move < MOVES; move++) {
+				for (int i = 0; i < CubieCube.CORNERS; i++) {
+					moved[i] = pieces[cornerFrom[move * CubieCube.CORNERS + i]];
+				}
+				cornerMoves[corners * MOVES + move] = (char) CubieRank
+						.rankPermutation(moved, CubieCube.CORNERS);
+			}
+		}
+
+		for (int edges = 0; edges < EDGE8_PERMUTATIONS; edges++) {
+			CubieRank.unrankPermutation(edges, pieces, SLICE_EDGE);
+			for (int i = SLICE_EDGE; i < CubieCube.EDGES; i++) {
+				pieces[i] = (byte) i;
+			}
+			for (int move : PHASE2_MOVES) {
+				applyEdges(pieces, move, moved);
+				edge8Moves[edges * MOVES + move] = (char) CubieRank
+						.rankPermutation(moved, SLICE_EDGE);
+			}
+		}
+	}
+
+	/**
+	 * Fill a table of two coordinates by breadth first search from the
+	 * solved state, one distance at a time
+	 */
+	private static PruningTable buildPruning(char[] movesA, int countA,
+			char[] movesB, int countB, int[] moves) {
+		PruningTable table = new PruningTable((long) countA * countB);
+		table.set(0, 0);
+
+		int filled = 1;
+		for (int distance = 0; filled < table.getSize(); distance++) {
+			int found = 0;
+
+			for (int a = 0; a < countA; a++) {
+				for (int b = 0; b < countB; b++) {
+					if (table.get((long) a * countB + b) != distance) {
+						continue;
+					}
+
+					for (int move : moves) {
+						long next = (long) movesA[a * MOVES + move] * countB
+								+ movesB[b * MOVES + move];
+						if (table.get(next) == PruningTable.UNKNOWN) {
+							table.set(next, distance + 1);
+							found++;
+						}
+					}
+				}
+			}
+
+			if (found == 0) {
+				break;
+			}
+			filled += found;
+		}
+
+		return table;
+	}
+
+	/**
+	 * Move the edges of a cube, pieces and moved may not be the same array
+	 */
+	void applyEdges(byte[] pieces, int move, byte[] moved) {
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			moved[i] = pieces[edgeFrom[move * CubieCube.EDGES + i]];
+		}
+	}
+
+	/**
+	 * Positions and order of the middle layer edges, 0 when they are solved
+	 * 
+	 * @param pieces
+	 *            edge in each position
+	 * @return 0 to SLICES * SLICE_ORDERS - 1
+	 */
+	int getSlice(byte[] pieces) {
+		int mask = 0, order = 0, seen = 0;
+
+		for (int i = 0; i < CubieCube.EDGES; i++) {
+			int piece = pieces[i] - SLICE_EDGE;
+			if (piece >= 0) {
+				mask |= 1 << i;
+
+				// Lehmer code of the order the edges are found in
+				int digit = piece - Integer.bitCount(seen & ((1 << piece) - 1));
+				seen |= 1 << piece;
+				order = order * (4 - Integer.bitCount(seen) + 1) + digit;
+			}
+		}
+
+		return sliceRanks[mask] * SLICE_ORDERS + order;
+	}
+
+	/**
+	 * Put the middle layer edges where a slice coordinate says and fill the
+	 * other positions with the other edges in order
+	 */
+	private void setSlice(int slice, byte[] pieces) {
+		int mask = sliceMasks[slice / SLICE_ORDERS];
+
+		byte[] order = new byte[4];
+		CubieRank.unrankPermutation(slice % SLICE_ORDERS, order, 4);
+
+		for (int i = 0, found = 0, other = 0; i < CubieCube.EDGES; i++) {
+			if ((mask & (1 << i)) != 0) {
+				pieces[i] = (byte) (SLICE_EDGE + order[found++]);
+			} else {
+				pieces[i] = (byte) other++;
+			}
+		}
+	}
+
+	/**
+	 * Clockwise quarter turn move code of a face
+	 */
+	int getFaceMove(int face) {
+		return faceMoves[face];
+	}
+
+	/**
+	 * Piece a face move brings to a corner position
+	 */
+	int getCornerFrom(int move, int position) {
+		return cornerFrom[move * CubieCube.CORNERS + position];
+	}
+
+	/**
+	 * Twist a face move adds to the corner it brings to a position
+	 */
+	int getCornerTwist(int move, int position) {
+		return cornerTwist[move * CubieCube.CORNERS + position];
+	}
+
+	/**
+	 * Piece a face move brings to an edge position
+	 */
+	int getEdgeFrom(int move, int position) {
+		return edgeFrom[move * CubieCube.EDGES + position];
+	}
+
+	/**
+	 * Flip a face move adds to the edge it brings to a position
+	 */
+	int getEdgeFlip(int move, int position) {
+		return edgeFlip[move * CubieCube.EDGES + position];
+	}
+
+	/**
+	 * Move codes of a solution, a half turn is two quarter turns
+	 * 
+	 * @param moves
+	 *            face moves of the solution
+	 * @param length
+	 *            number of face moves
+	 * @param turn
+	 *            rotation of the whole puzzle, see CubieCube.getTurn
+	 * @return move codes for a 3x3 puzzle, see Move
+	 */
+	byte[] getMoveCodes(int[] moves, int length, int turn) {
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			count += (moves[i] % 3 == 1) ? 2 : 1;
+		}
+
+		byte[] result = new byte[count];
+		for (int i = 0, j = 0; i < length; i++) {
+			int code = turnedMoves[turn * 6 + moves[i] / 3];
+
+			switch (moves[i] % 3) {
+			case 0:
+				result[j++] = (byte) code;
+				break;
+			case 1:
+				result[j++] = (byte) code;
+				result[j++] = (byte) code;
+				break;
+			default:
+				result[j++] = (byte) Move.inverse(code);
+				break;
+			}
+		}
+
+		return result;
+	}
+
+}
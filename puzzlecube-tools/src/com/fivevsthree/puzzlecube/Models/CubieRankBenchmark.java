@@ -0,0 +1,200 @@
+package com.fivevsthree.puzzlecube.Models;
+
+import java.util.Random;
+
+/**
+ * Checks that CubieRank round trips every corner coordinate, every edge
+ * flip and a sample of edge permutations, then measures how many ranks and
+ * unranks it does a second. It lives in puzzlecube-tools so it is never
+ * built into the game, and runs headless with only the core module on the
+ * class path:
+ * 
+ * java -cp bin:../puzzlecube-core/bin
+ * com.fivevsthree.puzzlecube.Models.CubieRankBenchmark [seconds]
+ */
+public final class CubieRankBenchmark {
+
+	// Random edge permutations to check, of the 479001600
+	private static final int EDGE_SAMPLES = 1000000;
+
+	// Ranks each timed run works through
+	private static final int BATCH = 1 << 16;
+
+	private CubieRankBenchmark() {
+	}
+
+	public static void main(String[] args) {
+		double seconds = (args.length > 0) ? Double.parseDouble(args[0]) : 2;
+
+		try {
+			checkPermutations(CubieCube.CORNERS,
+					CubieRank.CORNER_PERMUTATIONS);
+			checkOrientations(CubieCube.CORNERS, 3, CubieRank.CORNER_TWISTS);
+			checkOrientations(CubieCube.EDGES, 2, CubieRank.EDGE_FLIPS);
+			checkEdgeSamples(new Random(1));
+		} catch (IllegalStateException e) {
+			System.err.println("FAILED: " + e.getMessage());
+			System.exit(1);
+		}
+		System.out.println("Round trips OK");
+
+		Random random = new Random(2);
+		int[] corners = new int[BATCH];
+		int[] edges = new int[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			corners[i] = random.nextInt(CubieRank.CORNER_PERMUTATIONS);
+			edges[i] = random.nextInt(CubieRank.EDGE_PERMUTATIONS);
+		}
+
+		// A short run first so the timed runs are compiled
+		measure(corners, CubieCube.CORNERS, seconds / 4);
+		measure(edges, CubieCube.EDGES, seconds / 4);
+
+		report("Corner permutations",
+				measure(corners, CubieCube.CORNERS, seconds));
+		report("Edge permutations", measure(edges, CubieCube.EDGES, seconds));
+	}
+
+	/**
+	 * Unrank and rank every permutation of a length
+	 */
+	private static void checkPermutations(int length, int count) {
+		byte[] permutation = new byte[length];
+
+		for (int rank = 0; rank < count; rank++) {
+			CubieRank.unrankPermutation(rank, permutation, length);
+			checkPermutation(rank, permutation, length);
+		}
+	}
+
+	/**
+	 * Unrank and rank random edge permutations, there are too many to check
+	 * them all
+	 */
+	private static void checkEdgeSamples(Random random) {
+		byte[] permutation = new byte[CubieCube.EDGES];
+
+		checkRank(0, identity(permutation), CubieCube.EDGES);
+		checkRank(CubieRank.EDGE_PERMUTATIONS - 1, reversed(permutation),
+				CubieCube.EDGES);
+
+		for (int i = 0; i < EDGE_SAMPLES; i++) {
+			int rank = random.nextInt(CubieRank.EDGE_PERMUTATIONS);
+			CubieRank.unrankPermutation(rank, permutation, CubieCube.EDGES);
+			checkPermutation(rank, permutation, CubieCube.EDGES);
+		}
+	}
+
+	private static void checkPermutation(int rank, byte[] permutation,
+			int length) {
+		int seen = 0;
+		int swaps = 0;
+		for (int i = 0; i < length; i++) {
+			seen |= 1 << permutation[i];
+			for (int j = i + 1; j < length; j++) {
+				if (permutation[j] < permutation[i]) {
+					swaps++;
+				}
+			}
+		}
+
+		if (seen != (1 << length) - 1) {
+			throw new IllegalStateException("Rank " + rank
+					+ " is not a permutation");
+		}
+		if (CubieRank.getParity(permutation, length) != (swaps & 1)) {
+			throw new IllegalStateException("Rank " + rank
+					+ " has the wrong parity");
+		}
+
+		checkRank(rank, permutation, length);
+	}
+
+	private static void checkRank(int rank, byte[] permutation, int length) {
+		int actual = CubieRank.rankPermutation(permutation, length);
+		if (actual != rank) {
+			throw new IllegalStateException("Rank " + rank + " came back as "
+					+ actual);
+		}
+	}
+
+	/**
+	 * Unrank and rank every orientation of a length, checking the last piece
+	 * makes the sum a multiple of the base
+	 */
+	private static void checkOrientations(int length, int base, int count) {
+		byte[] orientations = new byte[length];
+
+		for (int rank = 0; rank < count; rank++) {
+			CubieRank.unrankOrientation(rank, orientations, length, base);
+
+			int sum = 0;
+			for (int i = 0; i < length; i++) {
+				sum += orientations[i];
+			}
+			if (sum % base != 0) {
+				throw new IllegalStateException("Orientation " + rank
+						+ " does not add up");
+			}
+
+			int actual = CubieRank.rankOrientation(orientations, length, base);
+			if (actual != rank) {
+				throw new IllegalStateException("Orientation " + rank
+						+ " came back as " + actual);
+			}
+		}
+	}
+
+	private static byte[] identity(byte[] permutation) {
+		for (int i = 0; i < permutation.length; i++) {
+			permutation[i] = (byte) i;
+		}
+
+		return permutation;
+	}
+
+	private static byte[] reversed(byte[] permutation) {
+		for (int i = 0; i < permutation.length; i++) {
+			permutation[i] = (byte) (permutation.length - 1 - i);
+		}
+
+		return permutation;
+	}
+
+	/**
+	 * Unrank and rank the batch over and over for a while
+	 * 
+	 * @return pairs of an unrank and a rank each second
+	 */
+	private static double measure(int[] ranks, int length, double seconds) {
+		byte[] permutation = new byte[length];
+		long checksum = 0;
+		long pairs = 0;
+
+		long start = System.nanoTime();
+		long end = start + (long) (seconds * 1e9);
+		long now;
+		do {
+			for (int rank : ranks) {
+				CubieRank.unrankPermutation(rank, permutation, length);
+				checksum += CubieRank.rankPermutation(permutation, length);
+			}
+			pairs += ranks.length;
+			now = System.nanoTime();
+		} while (now < end);
+
+		// Keeps the loop from being optimized away
+		if (checksum == -1) {
+			System.out.println();
+		}
+
+		return pairs / ((now - start) / 1e9);
+	}
+
+	private static void report(String name, double pairs) {
+		System.out.println(String.format(
+				"%s: %.1f M unrank and rank pairs/s, %.0f ns each", name,
+				pairs / 1e6, 1e9 / pairs));
+	}
+
+}
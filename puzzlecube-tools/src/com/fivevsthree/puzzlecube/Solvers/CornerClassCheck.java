@@ -0,0 +1,94 @@
+package com.fivevsthree.puzzlecube.Solvers;
+
+/**
+ * Checks the corner pattern database reduced by symmetry against a full one.
+ * Builds the distance of all 88179840 corner positions, then looks every one
+ * of them up through CornerClassCoordinate and fails on the first that
+ * differs. It lives in puzzlecube-tools so it is never built into the game,
+ * in the same package as the tables it checks. Runs headless with only the
+ * core module on the class path, and needs about 100 MB of heap:
+ * 
+ * java -Xmx512m -cp bin:../puzzlecube-core/bin
+ * com.fivevsthree.puzzlecube.Solvers.CornerClassCheck [threads]
+ */
+public final class CornerClassCheck {
+
+	private CornerClassCheck() {
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime
+				.getRuntime().availableProcessors();
+		PatternDatabaseBuilder builder = new PatternDatabaseBuilder(threads);
+
+		TwoPhaseTables tables = TwoPhaseTables.get();
+		CornerClassCoordinate classes = new CornerClassCoordinate(tables,
+				CubeSymmetries.get());
+		FullCornerCoordinate full = new FullCornerCoordinate(tables);
+
+		long start = System.nanoTime();
+		PruningTable classTable = builder.build(classes);
+		System.out.println(String.format(
+				"Built %d class entries in %.1f s", classTable.getSize(),
+				(System.nanoTime() - start) / 1e9));
+
+		start = System.nanoTime();
+		PruningTable fullTable = builder.build(full);
+		System.out.println(String.format("Built %d full entries in %.1f s",
+				fullTable.getSize(), (System.nanoTime() - start) / 1e9));
+
+		int permutations = TwoPhaseTables.CORNER_PERMUTATIONS;
+		for (int permutation = 0; permutation < permutations; permutation++) {
+			for (int twist = 0; twist < TwoPhaseTables.TWISTS; twist++) {
+				int expected = fullTable.get((long) permutation
+						* TwoPhaseTables.TWISTS + twist);
+				int actual = classTable.get(classes.getIndex(permutation,
+						twist));
+
+				if (actual != expected) {
+					System.err.println("FAILED: permutation " + permutation
+							+ " twist " + twist + " has distance " + actual
+							+ " instead of " + expected);
+					System.exit(1);
+				}
+			}
+		}
+
+		System.out.println("Every corner position matches");
+	}
+
+	/**
+	 * Permutation and twist of all eight corners, permutation * TWISTS +
+	 * twist
+	 */
+	private static class FullCornerCoordinate implements PatternCoordinate {
+
+		private final TwoPhaseTables tables;
+
+		FullCornerCoordinate(TwoPhaseTables tables) {
+			this.tables = tables;
+		}
+
+		@Override
+		public long getSize() {
+			return (long) TwoPhaseTables.CORNER_PERMUTATIONS
+					* TwoPhaseTables.TWISTS;
+		}
+
+		@Override
+		public void getNeighbors(long index, long[] neighbors) {
+			int permutation = (int) (index / TwoPhaseTables.TWISTS);
+			int twist = (int) (index % TwoPhaseTables.TWISTS);
+
+			for (int move = 0; move < TwoPhaseTables.MOVES; move++) {
+				neighbors[move] = (long) tables.cornerMoves[permutation
+						* TwoPhaseTables.MOVES + move]
+						* TwoPhaseTables.TWISTS
+						+ tables.twistMoves[twist * TwoPhaseTables.MOVES
+								+ move];
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.fivevsthree.puzzlecube.Callbacks;
+
+/**
+ * A PuzzleListener that ignores every event, for listeners that only need
+ * some of them
+ */
+public class PuzzleAdapter implements PuzzleListener {
+	@Override
+	public void moveApplied(int move, long counter) {
+	}
+
+	@Override
+	public void rotationStarted() {
+	}
+
+	@Override
+	public void rotationComplete(boolean solved) {
+	}
+
+	@Override
+	public void timerChanged(long seconds) {
+	}
+
+	@Override
+	public void solved() {
+	}
+}
@@ -0,0 +1,170 @@
+package com.fivevsthree.puzzlecube.Callbacks;
+
+/**
+ * Sends the events of a puzzle to any number of listeners. The listeners are
+ * kept in an array that is copied when one is added or removed, so sending an
+ * event is a loop over an array that creates no objects and never sees a
+ * half changed list.
+ * 
+ * Every event is also written to a ring buffer that is allocated once, for
+ * subscribers that would rather read the events later, such as from another
+ * thread, see PuzzleEventReader. When a reader falls more than the capacity
+ * behind, the oldest events are lost.
+ */
+public class PuzzleEventBus {
+
+	/*
+	 * Types of the events in the ring buffer
+	 */
+	public static final int MOVE_APPLIED = 0;
+	public static final int ROTATION_STARTED = 1;
+	public static final int ROTATION_COMPLETE = 2;
+	public static final int TIMER_CHANGED = 3;
+	public static final int SOLVED = 4;
+
+	private static final PuzzleListener[] NO_LISTENERS = new PuzzleListener[0];
+
+	private static final int DEFAULT_CAPACITY = 256;
+
+	private volatile PuzzleListener[] listeners = NO_LISTENERS;
+
+	// Ring buffer of the latest events, the capacity is a power of two
+	private final byte[] types;
+	private final byte[] moves;
+	private final long[] values;
+	private final int mask;
+
+	// Number of events ever written, readers use it to find new events
+	private long sequence;
+
+	public PuzzleEventBus() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a bus
+	 * 
+	 * @param capacity
+	 *            number of events kept for readers, rounded up to a power of
+	 *            two
+	 */
+	public PuzzleEventBus(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+
+		types = new byte[size];
+		moves = new byte[size];
+		values = new long[size];
+		mask = size - 1;
+	}
+
+	public synchronized void addListener(PuzzleListener listener) {
+		PuzzleListener[] next = new PuzzleListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, next, 0, listeners.length);
+		next[listeners.length] = listener;
+
+		listeners = next;
+	}
+
+	public synchronized void removeListener(PuzzleListener listener) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				PuzzleListener[] next = (listeners.length == 1) ? NO_LISTENERS
+						: new PuzzleListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, next, 0, i);
+				System.arraycopy(listeners, i + 1, next, i, next.length - i);
+
+				listeners = next;
+				return;
+			}
+		}
+	}
+
+	public void moveApplied(int move, long counter) {
+		record(MOVE_APPLIED, move, counter);
+
+		PuzzleListener[] listeners = this.listeners;
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].moveApplied(move, counter);
+		}
+	}
+
+	public void rotationStarted() {
+		record(ROTATION_STARTED, 0, 0);
+
+		PuzzleListener[] listeners = this.listeners;
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].rotationStarted();
+		}
+	}
+
+	/**
+	 * Send a rotation complete event, followed by a solved event if the
+	 * puzzle is solved
+	 */
+	public void rotationComplete(boolean solved) {
+		record(ROTATION_COMPLETE, 0, solved ? 1 : 0);
+
+		PuzzleListener[] listeners = this.listeners;
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].rotationComplete(solved);
+		}
+
+		if (solved) {
+			record(SOLVED, 0, 0);
+
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].solved();
+			}
+		}
+	}
+
+	public void timerChanged(long seconds) {
+		record(TIMER_CHANGED, 0, seconds);
+
+		PuzzleListener[] listeners = this.listeners;
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i].timerChanged(seconds);
+		}
+	}
+
+	/**
+	 * Write an event to the ring buffer. The timer may send events from its
+	 * own thread, so writers and readers take turns.
+	 */
+	private synchronized void record(int type, int move, long value) {
+		int index = (int) sequence & mask;
+		types[index] = (byte) type;
+		moves[index] = (byte) move;
+		values[index] = value;
+
+		sequence++;
+	}
+
+	/**
+	 * Create a reader that starts with the next event
+	 */
+	public synchronized PuzzleEventReader createReader() {
+		return new PuzzleEventReader(this, sequence);
+	}
+
+	long getSequence() {
+		return sequence;
+	}
+
+	int getCapacity() {
+		return mask + 1;
+	}
+
+	int getType(long event) {
+		return types[(int) event & mask];
+	}
+
+	int getMove(long event) {
+		return moves[(int) event & mask];
+	}
+
+	long getValue(long event) {
+		return values[(int) event & mask];
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.fivevsthree.puzzlecube.Callbacks;
+
+/**
+ * Reads the events of a PuzzleEventBus from its ring buffer, one at a time.
+ * Each reader keeps its own place, so any number of readers on any threads
+ * can read the same events. Reading creates no objects.
+ */
+public class PuzzleEventReader {
+
+	private final PuzzleEventBus bus;
+
+	// Sequence number of the next event to read
+	private long next;
+
+	private int type, move;
+	private long value;
+
+	// Events that were overwritten before they could be read
+	private long lost;
+
+	PuzzleEventReader(PuzzleEventBus bus, long next) {
+		this.bus = bus;
+		this.next = next;
+	}
+
+	/**
+	 * Move to the next event
+	 * 
+	 * @return false if there are no new events
+	 */
+	public boolean next() {
+		// The bus writes events under the same lock
+		synchronized (bus) {
+			long written = bus.getSequence();
+			if (next == written) {
+				return false;
+			}
+
+			// Skip events that have already been overwritten
+			long oldest = written - bus.getCapacity();
+			if (next < oldest) {
+				lost += oldest - next;
+				next = oldest;
+			}
+
+			type = bus.getType(next);
+			move = bus.getMove(next);
+			value = bus.getValue(next);
+			next++;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Send the current event to a listener, for handling events on the thread
+	 * that reads them
+	 */
+	public void dispatch(PuzzleListener listener) {
+		switch (type) {
+		case PuzzleEventBus.MOVE_APPLIED:
+			listener.moveApplied(move, value);
+			break;
+		case PuzzleEventBus.ROTATION_STARTED:
+			listener.rotationStarted();
+			break;
+		case PuzzleEventBus.ROTATION_COMPLETE:
+			listener.rotationComplete(value != 0);
+			break;
+		case PuzzleEventBus.TIMER_CHANGED:
+			listener.timerChanged(value);
+			break;
+		case PuzzleEventBus.SOLVED:
+			listener.solved();
+			break;
+		}
+	}
+
+	/**
+	 * Type of the current event, such as PuzzleEventBus.MOVE_APPLIED
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * Move code of a MOVE_APPLIED event, see Move
+	 */
+	public int getMove() {
+		return move;
+	}
+
+	/**
+	 * Move count of a MOVE_APPLIED event, seconds of a TIMER_CHANGED event, or
+	 * 1 for a ROTATION_COMPLETE event that solved the puzzle
+	 */
+	public long getValue() {
+		return value;
+	}
+
+	/**
+	 * Number of events that were overwritten before this reader got to them
+	 */
+	public long getLost() {
+		return lost;
+	}
+
+}
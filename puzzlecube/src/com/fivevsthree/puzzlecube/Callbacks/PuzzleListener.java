@@ -0,0 +1,40 @@
+package com.fivevsthree.puzzlecube.Callbacks;
+
+/**
+ * Receives events from a puzzle, see PuzzleEventBus. Extend PuzzleAdapter to
+ * only handle some of them.
+ */
+public interface PuzzleListener {
+	/**
+	 * Called when the player has rotated a layer
+	 * 
+	 * @param move
+	 *            move code of the rotation, see Move
+	 * @param counter
+	 *            current move count
+	 */
+	public void moveApplied(int move, long counter);
+
+	/**
+	 * Called when an animation rotation has started
+	 */
+	public void rotationStarted();
+
+	/**
+	 * Called when an animation rotation has completed
+	 */
+	public void rotationComplete(boolean solved);
+
+	/**
+	 * Called when the timer has changed
+	 * 
+	 * @param seconds
+	 *            current time in seconds
+	 */
+	public void timerChanged(long seconds);
+
+	/**
+	 * Called after rotationComplete when the rotation solved the puzzle
+	 */
+	public void solved();
+}
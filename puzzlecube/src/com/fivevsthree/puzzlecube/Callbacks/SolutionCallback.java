@@ -0,0 +1,5 @@
+package com.fivevsthree.puzzlecube.Callbacks;
+
+public interface SolutionCallback {
+	public void solutionFound(byte[] moves);
+}
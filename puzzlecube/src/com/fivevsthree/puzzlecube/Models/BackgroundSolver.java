@@ -0,0 +1,103 @@
+package com.fivevsthree.puzzlecube.Models;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.Gdx;
+import com.fivevsthree.puzzlecube.Callbacks.SolutionCallback;
+import com.fivevsthree.puzzlecube.Solvers.TwoPhaseSolver;
+
+/**
+ * Runs the 3x3 solver on a background thread, so the render thread never
+ * waits for a search or for the solver tables, which take a couple of
+ * seconds to build the first time and longer on a phone. The tables are
+ * built by the first request. Requests are handled one at a time in the
+ * order they are made, and each result is passed to its callback on the
+ * render thread.
+ */
+public final class BackgroundSolver {
+
+	private static ExecutorService executor;
+
+	// Only used on the solver thread
+	private static TwoPhaseSolver solver;
+
+	private BackgroundSolver() {
+	}
+
+	/**
+	 * Find a solution for a 3x3 puzzle
+	 * 
+	 * @param state
+	 *            position to solve, see Puzzle.getSnapshot
+	 * @param maxLength
+	 *            most face turns the solution may have
+	 * @param callback
+	 *            gets the move codes on the render thread, or null if no
+	 *            solution was found within the limit
+	 */
+	public static void solve(final CubeState state, final int maxLength,
+			final SolutionCallback callback) {
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				post(getSolver().solve(state, maxLength), callback);
+			}
+		});
+	}
+
+	/**
+	 * Find moves that scramble a solved 3x3 puzzle to a random position,
+	 * every position being equally likely
+	 * 
+	 * @param random
+	 *            source of random numbers
+	 * @param callback
+	 *            gets the move codes on the render thread, never null
+	 */
+	public static void generateScramble(final Random random,
+			final SolutionCallback callback) {
+		submit(new Runnable() {
+			@Override
+			public void run() {
+				post(getSolver().generateScramble(random), callback);
+			}
+		});
+	}
+
+	private static void post(final byte[] moves,
+			final SolutionCallback callback) {
+		Gdx.app.postRunnable(new Runnable() {
+			@Override
+			public void run() {
+				callback.solutionFound(moves);
+			}
+		});
+	}
+
+	private static TwoPhaseSolver getSolver() {
+		if (solver == null) {
+			solver = new TwoPhaseSolver();
+		}
+
+		return solver;
+	}
+
+	private static synchronized void submit(Runnable task) {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "BackgroundSolver");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		executor.execute(task);
+	}
+
+}
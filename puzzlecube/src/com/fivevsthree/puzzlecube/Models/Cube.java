@@ -2,6 +2,9 @@ package com.fivevsthree.puzzlecube.Models;
 
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonValue;
+import com.fivevsthree.puzzlecube.Views.RotationCache;
 
 /**
  * Logical cube that can be modified so the puzzle mesh can remain static
@@ -9,7 +12,7 @@ import com.badlogic.gdx.math.Vector3;
  * @author splude@fivevsthree.com
  * 
  */
-public class Cube {
+public class Cube implements Json.Serializable {
 
 	/**
 	 * Offset of the cube in the puzzle mesh
@@ -23,18 +26,22 @@ public class Cube {
 	public Vector3 location;
 
 	/**
-	 * The current rotation of the cube
+	 * Orientation of the cube when it is not being animated, see Rotation
 	 * 
 	 */
-	public Matrix4 rotation;
+	public byte orientation;
 
-	public Matrix4 previousRotation;
+	/**
+	 * The current rotation of the cube, used to draw it
+	 * 
+	 */
+	public Matrix4 rotation;
 
 	public Cube() {
 		index = 0;
 		location = new Vector3();
+		orientation = Rotation.IDENTITY;
 		rotation = new Matrix4();
-		previousRotation = new Matrix4();
 	}
 
 	/**
@@ -48,8 +55,41 @@ public class Cube {
 	public Cube(int index, Vector3 location) {
 		this.index = index;
 		this.location = location.cpy();
+		orientation = Rotation.IDENTITY;
 		rotation = new Matrix4();
-		previousRotation = new Matrix4();
+	}
+
+	/**
+	 * Serialize the values that we want to save
+	 */
+	@Override
+	public void write(Json json) {
+		json.writeValue("index", index);
+		json.writeValue("location", location);
+		json.writeValue("orientation", orientation);
+	}
+
+	/**
+	 * Deserialize the values that we want to load
+	 */
+	@Override
+	public void read(Json json, JsonValue jsonData) {
+		index = json.readValue("index", int.class, 0, jsonData);
+
+		Vector3 location = json.readValue("location", Vector3.class, jsonData);
+		if (location != null) {
+			this.location.set(location);
+		}
+
+		if (jsonData.has("orientation")) {
+			orientation = json.readValue("orientation", byte.class, jsonData);
+		} else if (jsonData.has("rotation")) {
+			// Older saved games stored the matrix, which may have drifted
+			orientation = (byte) RotationCache.find(json.readValue(
+					"rotation", Matrix4.class, jsonData));
+		}
+
+		rotation.set(RotationCache.get(orientation));
 	}
 
 }
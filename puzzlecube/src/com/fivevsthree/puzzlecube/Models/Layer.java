@@ -1,63 +1,92 @@
 package com.fivevsthree.puzzlecube.Models;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import com.badlogic.gdx.math.Vector3;
+import com.fivevsthree.puzzlecube.Views.RotationCache;
 
 /**
- * Encapsulates a layer of cubes for rotation
+ * Encapsulates a layer of cubes for rotation. A layer is created once per move
+ * and refilled with the cubes currently in it, so finding a layer does not
+ * create any objects.
  * 
  * @author splude@fivevsthree.com
  * 
  */
 public class Layer {
 
-	private List<Cube> cubes;
+	private Cube[] cubes;
+
+	// Orientation of each cube before the layer started rotating
+	private byte[] orientations;
+
+	private int size;
 	private Vector3 axis;
+	private int move;
+
+	// Degrees the layer has turned
+	private float angle;
+
+	private Vector3 translation;
 
 	/**
-	 * Create a layer out of cubes
+	 * Create a layer to add cubes to
 	 * 
-	 * @param cubes
-	 *            cubes in the layer
 	 * @param axis
 	 *            axis the layer will rotate around
+	 * @param move
+	 *            move code of the rotation, see Move
+	 * @param capacity
+	 *            most cubes the layer can hold
 	 */
-	public Layer(Cube[] cubes, Vector3 axis) {
-		this.cubes = new ArrayList<Cube>();
+	public Layer(Vector3 axis, int move, int capacity) {
+		this.cubes = new Cube[capacity];
+		this.orientations = new byte[capacity];
 		this.axis = new Vector3(axis);
+		this.move = move;
 
-		for (Cube cube : cubes) {
-			cube.previousRotation.set(cube.rotation);
-			this.cubes.add(cube);
-		}
+		translation = new Vector3();
+	}
+
+	public int getMove() {
+		return move;
+	}
+
+	public Vector3 getAxis() {
+		return axis;
+	}
+
+	public float getAngle() {
+		return angle;
 	}
 
 	/**
-	 * Create a layer to add cubes to
-	 * 
-	 * @param axis
-	 *            axis the layer will rotate around
+	 * Remove all cubes so the layer can be filled again
 	 */
-	public Layer(Vector3 axis) {
-		this.cubes = new ArrayList<Cube>();
-		this.axis = new Vector3(axis);
+	public void clear() {
+		size = 0;
+		angle = 0f;
 	}
 
 	public void addCube(Cube cube) {
-		cube.previousRotation.set(cube.rotation);
-		cubes.add(cube);
+		orientations[size] = cube.orientation;
+		cubes[size++] = cube;
 	}
 
 	/**
-	 * Rotate the layer around an axis a specified number of degrees
+	 * Rotate the layer around an axis a specified number of degrees. A full
+	 * 90 degree turn snaps the cubes to their exact orientation.
 	 * 
 	 * @param degrees
 	 *            amount to rotate
 	 */
 	public void rotate(float degrees) {
-		for (Cube cube : cubes) {
+		angle = degrees;
+
+		for (int i = 0; i < size; i++) {
+			if (degrees == 90f) {
+				cubes[i].rotation.set(RotationCache.get(cubes[i].orientation));
+				continue;
+			}
+
 			/*
 			 * We need to "undo" our previous rotations before we apply our new
 			 * rotation. This way we will rotate around the world axis instead
@@ -68,52 +97,20 @@ public class Layer {
 			 * axis. Once we apply the new rotation, we "redo" our previous
 			 * rotations.
 			 */
-			cube.rotation.idt().rotate(axis, degrees)
-					.mul(cube.previousRotation);
+			cubes[i].rotation.idt().rotate(axis, degrees)
+					.mul(RotationCache.get(orientations[i]));
 		}
 	}
 
 	public void explode(float amount) {
-		Vector3 translation = new Vector3();
+		for (int i = 0; i < size; i++) {
+			Cube cube = cubes[i];
 
-		for (Cube cube : cubes) {
 			translation.set(cube.location).scl(amount);
 
 			cube.rotation.idt().rotate(cube.location, amount * 20f)
-					.translate(translation).mul(cube.previousRotation);
-		}
-	}
-
-	public void reverse() {
-		for (Cube cube : cubes) {
-			cube.previousRotation.set(cube.rotation);
-		}
-		axis.scl(-1);
-	}
-
-	/**
-	 * Update the location in the logical cubes after rotation
-	 */
-	public void updateLocations() {
-		Vector3 face = new Vector3();
-
-		// Iterate through the layer and rotate each cube
-		for (Cube cube : cubes) {
-			/*
-			 * We need to keep the location coordinate for the axis we are
-			 * rotating around because the cross multiply will only provide the
-			 * other two
-			 */
-			face.set((axis.x != 0f) ? cube.location.x : 0f,
-					(axis.y != 0f) ? cube.location.y : 0f,
-					(axis.z != 0f) ? cube.location.z : 0f);
-
-			/*
-			 * Using the axis, in the opposite direction, we can cross multiply
-			 * with the current location to give us the new location after
-			 * rotation
-			 */
-			cube.location.crs(-axis.x, -axis.y, -axis.z).add(face);
+					.translate(translation)
+					.mul(RotationCache.get(orientations[i]));
 		}
 	}
 
@@ -1,6 +1,6 @@
 package com.fivevsthree.puzzlecube.Models;
 
-import java.util.ArrayList;
+import java.util.Random;
 
 import aurelienribon.tweenengine.BaseTween;
 import aurelienribon.tweenengine.Timeline;
@@ -14,23 +14,33 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Preferences;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
 import com.badlogic.gdx.utils.Timer;
 import com.badlogic.gdx.utils.Timer.Task;
 import com.fivevsthree.puzzlecube.PuzzleCube;
-import com.fivevsthree.puzzlecube.Callbacks.PuzzleCallback;
+import com.fivevsthree.puzzlecube.Callbacks.PuzzleEventBus;
+import com.fivevsthree.puzzlecube.Callbacks.SolutionCallback;
+import com.fivevsthree.puzzlecube.Solvers.TwoPhaseSolver;
 import com.fivevsthree.puzzlecube.Tweens.LayerTween;
 import com.fivevsthree.puzzlecube.Tweens.PuzzleTween;
 import com.fivevsthree.puzzlecube.Views.PuzzleCamera;
+import com.fivevsthree.puzzlecube.Views.RotationCache;
 
 public class Puzzle implements Json.Serializable {
 
 	private Cube cubes[];
+	private int size;
+	private PuzzleState state;
+
+	// Copy of a 3x3 state for other threads, null for other sizes
+	private volatile CubeState snapshot;
+
 	private TweenManager tweenManager;
-	private PuzzleCallback callback;
+
+	// Listeners of moves, rotations, the timer and solving
+	private final PuzzleEventBus events = new PuzzleEventBus();
 
 	private PuzzleCamera camera;
 	private PuzzleMesh mesh;
@@ -40,15 +50,37 @@ public class Puzzle implements Json.Serializable {
 	private Timer timer;
 	private long secondsElapsed, moveCounter;
 
+	// Moves with cancelling turns folded, counted in each turn metric
+	private MoveNormalizer normalizer;
+
+	// Hashes of the positions reached since the puzzle was scrambled
+	private PositionSet visitedPositions;
+	private boolean isRepeatedPosition;
+
 	private boolean isLayerRotating;
 
+	// Layer being animated, null when no layer is rotating
+	private Layer rotatingLayer;
+
+	// Scramble that arrived while a layer was rotating, made once it stops
+	private byte[] pendingScramble;
+
 	private float[] colors;
 
-	private ArrayList<Layer> rotations;
+	// Rotations that can be undone and redone, with every branch
+	private MoveTree history;
+
+	// Moves between two nodes of the history, reused between jumps
+	private MoveLog historyPath;
+
+	// Saved states along the history, so long jumps do not replay it all
+	private HistoryCheckpoints checkpoints;
 
-	private Quaternion cubeRotation;
+	// One reusable layer for each move code
+	private Layer[] layers;
 
-	private Vector3 forwardVector, upVector, rightVector;
+	// Cube locations used to rebuild the puzzle state
+	private int[] locations;
 
 	public static enum RotationAnimation {
 		Bounce, Standard, NoAnimation
@@ -62,27 +94,6 @@ public class Puzzle implements Json.Serializable {
 
 	public Color color;
 
-	private int[] centers = { 10, 15, 12, 13, 4, 21 };
-
-	private int[][] faces = {
-			// Bottom
-			{ 0, 1, 2, 9, 11, 17, 18, 19 },
-
-			// Top
-			{ 6, 7, 8, 14, 16, 23, 24, 25 },
-
-			// Back
-			{ 0, 3, 6, 9, 14, 17, 20, 23 },
-
-			// Front
-			{ 2, 5, 8, 11, 16, 19, 22, 25 },
-
-			// Left
-			{ 0, 1, 2, 3, 5, 6, 7, 8 },
-
-			// Right
-			{ 17, 18, 19, 20, 22, 23, 24, 25 } };
-
 	/**
 	 * All of our logical cubes
 	 * 
@@ -92,6 +103,24 @@ public class Puzzle implements Json.Serializable {
 		return cubes;
 	}
 
+	/**
+	 * The primitive state the cubes are derived from
+	 * 
+	 * @return puzzle state
+	 */
+	public PuzzleState getState() {
+		return state;
+	}
+
+	/**
+	 * Number of cubes along each edge of the puzzle
+	 * 
+	 * @return puzzle size
+	 */
+	public int getSize() {
+		return size;
+	}
+
 	public long getSeconds() {
 		return secondsElapsed;
 	}
@@ -104,6 +133,100 @@ public class Puzzle implements Json.Serializable {
 		return moveCounter;
 	}
 
+	/**
+	 * Moves in the half turn metric, see MoveNormalizer
+	 */
+	public long getHalfTurnMoves() {
+		return normalizer.getHalfTurnCount();
+	}
+
+	/**
+	 * Moves in the quarter turn metric, see MoveNormalizer
+	 */
+	public long getQuarterTurnMoves() {
+		return normalizer.getQuarterTurnCount();
+	}
+
+	/**
+	 * Moves in the slice turn metric, see MoveNormalizer
+	 */
+	public long getSliceTurnMoves() {
+		return normalizer.getSliceTurnCount();
+	}
+
+	/**
+	 * Facelets of a 3x3 puzzle, see FaceletCodec
+	 * 
+	 * @return 54 facelet characters, or null if the puzzle is not a 3x3
+	 */
+	public String getFacelets() {
+		if (size != 3) {
+			return null;
+		}
+
+		CubieCube cubies = new CubieCube();
+		cubies.set(state);
+
+		return FaceletCodec.toString(cubies);
+	}
+
+	/**
+	 * Set a 3x3 puzzle to a position from another program. The undo history
+	 * and move counts start over from the new position.
+	 * 
+	 * @param facelets
+	 *            54 facelet characters, see FaceletCodec
+	 * @return false if the puzzle is not a 3x3 and was left as it was
+	 * @throws IllegalArgumentException
+	 *             if the facelets are not a solvable 3x3 position
+	 */
+	public boolean setFacelets(String facelets) {
+		if (isLayerRotating) {
+			throw new IllegalStateException("A layer is rotating");
+		}
+
+		if (size != 3) {
+			return false;
+		}
+
+		CubieCube cubies = new CubieCube();
+		FaceletCodec.fromString(facelets, cubies);
+		cubies.get(state);
+		updateAllLocations();
+
+		history.clear();
+		checkpoints.invalidate();
+		normalizer.clear();
+		visitedPositions.clear();
+		visitPosition();
+		return true;
+	}
+
+	/**
+	 * Hash of the position of the cubes, see PuzzleState.getHash
+	 */
+	public long getStateHash() {
+		return state.getHash();
+	}
+
+	/**
+	 * Check if the last move returned to a position that was already reached
+	 * since the puzzle was scrambled. Center cubes that look the same on
+	 * larger puzzles are still told apart.
+	 * 
+	 * @return true if the position is a repeat
+	 */
+	public boolean isRepeatedPosition() {
+		return isRepeatedPosition;
+	}
+
+	/**
+	 * Remember the current position
+	 */
+	private void visitPosition() {
+		isRepeatedPosition = !visitedPositions.add(state.getHash());
+	}
+
 	public RotationAnimation getRotationAnimation() {
 		return rotationAnimation;
 	}
@@ -116,12 +239,32 @@ public class Puzzle implements Json.Serializable {
 		return mesh;
 	}
 
-	public void setCallback(PuzzleCallback callback) {
-		this.callback = callback;
+	/**
+	 * The layer being animated
+	 * 
+	 * @return rotating layer, or null if no layer is rotating
+	 */
+	public Layer getRotatingLayer() {
+		return rotatingLayer;
+	}
+
+	/**
+	 * Events of this puzzle, add a listener to receive them
+	 */
+	public PuzzleEventBus getEvents() {
+		return events;
 	}
 
 	public boolean isRotationsEmpty() {
-		return rotations.isEmpty();
+		return !history.canUndo();
+	}
+
+	public boolean isRedoEmpty() {
+		return !history.canRedo();
+	}
+
+	public MoveTree getHistory() {
+		return history;
 	}
 
 	public Puzzle() {
@@ -129,12 +272,26 @@ public class Puzzle implements Json.Serializable {
 	}
 
 	/**
-	 * Create a puzzle with new cubes
+	 * Create a puzzle with new cubes, using the size from the preferences
 	 * 
-	 * @param game
-	 *            instance of PuzzleCube game
+	 * @param useDefaults
+	 *            ignore the preferences and use the default settings
 	 */
 	public Puzzle(boolean useDefaults) {
+		this(useDefaults, (useDefaults) ? PuzzleCube.PUZZLE_SIZE : Gdx.app
+				.getPreferences(PuzzleCube.PREFERENCES_FILE).getInteger(
+						"size", PuzzleCube.PUZZLE_SIZE));
+	}
+
+	/**
+	 * Create a puzzle with new cubes
+	 * 
+	 * @param useDefaults
+	 *            ignore the preferences and use the default settings
+	 * @param size
+	 *            number of cubes along each edge of the puzzle, 2 to 21
+	 */
+	public Puzzle(boolean useDefaults, int size) {
 		preferences = Gdx.app.getPreferences(PuzzleCube.PREFERENCES_FILE);
 
 		rotationAnimation = RotationAnimation.values()[(useDefaults) ? 0
@@ -153,17 +310,17 @@ public class Puzzle implements Json.Serializable {
 							PuzzleCube.DEFAULT_COLOR[i].b);
 		}
 
-		mesh = new PuzzleMesh(colors, 1f);
-
 		// Create the logical cubes
-		createCubes();
+		setSize(size);
 
-		rotations = new ArrayList<Layer>();
+		mesh = new PuzzleMesh(size, colors);
 
-		cubeRotation = new Quaternion();
-		forwardVector = new Vector3();
-		upVector = new Vector3();
-		rightVector = new Vector3();
+		history = new MoveTree();
+		historyPath = new MoveLog();
+		checkpoints = new HistoryCheckpoints();
+
+		visitedPositions = new PositionSet();
+		visitPosition();
 
 		color = new Color(1f, 1f, 1f, 1f);
 
@@ -197,7 +354,7 @@ public class Puzzle implements Json.Serializable {
 	}
 
 	public void resetTimer() {
-		// Count up every second and notify the callback if there is one
+		// Count up every second and notify the listeners
 		if (timer == null) {
 			timer = new Timer();
 		}
@@ -207,62 +364,186 @@ public class Puzzle implements Json.Serializable {
 			@Override
 			public void run() {
 				secondsElapsed++;
-				if (callback != null) {
-					callback.timerChanged(secondsElapsed);
-				}
+				events.timerChanged(secondsElapsed);
 			}
 		}, 1f, 1f);
 	}
 
 	/**
-	 * Create an array of cubes
+	 * Create the puzzle state, layers and cubes for a puzzle size
+	 * 
+	 * @param size
+	 *            number of cubes along each edge of the puzzle
+	 */
+	private void setSize(int size) {
+		this.size = size;
+
+		state = new PuzzleState(size);
+		normalizer = new MoveNormalizer(size);
+		snapshot = (size == 3) ? CubeState.SOLVED : null;
+		pendingScramble = null;
+		locations = new int[state.getGeometry().getCount() * 3];
+
+		layers = new Layer[state.getGeometry().getMoveCount()];
+		for (int move = 0; move < layers.length; move++) {
+			int direction = (Move.getDirection(move) == Move.POSITIVE) ? 1
+					: -1;
+
+			layers[move] = new Layer(new Vector3(
+					(Move.getAxis(move) == Move.X) ? direction : 0f,
+					(Move.getAxis(move) == Move.Y) ? direction : 0f,
+					(Move.getAxis(move) == Move.Z) ? direction : 0f), move,
+					size * size);
+		}
+
+		createCubes();
+	}
+
+	/**
+	 * Create an array of cubes, only the cubes on the surface of the puzzle
+	 * are created
 	 */
 	private void createCubes() {
 		// y = up and down
 		// x = right and left
 		// z = closer and further
-		cubes = new Cube[26];
-
-		// x = -1 : left, x = 0 : center, x = 1 : right
-		for (int i = 0, x = -1; x < 2; x++) {
-			// y = -1 : bottom, y = 0 : center, y = 1 : top
-			for (int y = -1; y < 2; y++) {
-				// z = -1 : back, z = 0 center, z = 1 : front
-				for (int z = -1; z < 2; z++) {
-					// 0, 0, 0 is center cube which is not created
-					if (x == 0 && y == 0 && z == 0) {
-						continue;
-					}
+		cubes = new Cube[state.getGeometry().getCount()];
 
-					cubes[i] = new Cube(i, new Vector3(x, y, z));
+		for (int i = 0; i < cubes.length; i++) {
+			cubes[i] = new Cube(i, new Vector3(getLocation(i, Move.X),
+					getLocation(i, Move.Y), getLocation(i, Move.Z)));
+		}
+	}
 
-					// Move on to the next cube
-					i++;
-				}
-			}
+	/**
+	 * Location of a slot relative to the center of the puzzle. Cubes are one
+	 * unit apart, so puzzles with an even size have cubes at half units.
+	 * 
+	 * @param slot
+	 *            slot index
+	 * @param axis
+	 *            axis of the coordinate
+	 * @return coordinate along the axis
+	 */
+	private float getLocation(int slot, int axis) {
+		return state.getGeometry().getLocation(slot, axis) - (size - 1) / 2f;
+	}
+
+	/**
+	 * Copy the cube locations and orientations from the puzzle state to the
+	 * logical cubes of a layer after it has been rotated
+	 * 
+	 * @param move
+	 *            move code of the rotation
+	 */
+	private void updateLocations(int move) {
+		for (int slot : state.getGeometry().getLayerSlots(move)) {
+			Cube cube = cubes[state.getCubeAt(slot)];
+
+			cube.location.set(getLocation(slot, Move.X),
+					getLocation(slot, Move.Y), getLocation(slot, Move.Z));
+			cube.orientation = (byte) state.getOrientation(cube.index);
 		}
+
+		if (snapshot != null) {
+			snapshot = snapshot.applyMove(move);
+		}
+	}
+
+	/**
+	 * Copy the location and orientation of every cube from the puzzle state,
+	 * after the state has changed without rotating the layers
+	 */
+	private void updateAllLocations() {
+		for (int slot = 0; slot < cubes.length; slot++) {
+			Cube cube = cubes[state.getCubeAt(slot)];
+
+			cube.location.set(getLocation(slot, Move.X),
+					getLocation(slot, Move.Y), getLocation(slot, Move.Z));
+			cube.orientation = (byte) state.getOrientation(cube.index);
+			cube.rotation.set(RotationCache.get(cube.orientation));
+		}
+
+		updateSnapshot();
+	}
+
+	/**
+	 * Rebuild the puzzle state from the locations and orientations of the
+	 * logical cubes, such as cubes loaded from a saved game
+	 */
+	private void updateState() {
+		int[] orientations = new int[cubes.length];
+
+		for (Cube cube : cubes) {
+			locations[cube.index * 3] = getLayerIndex(cube.location.x);
+			locations[cube.index * 3 + 1] = getLayerIndex(cube.location.y);
+			locations[cube.index * 3 + 2] = getLayerIndex(cube.location.z);
+
+			orientations[cube.index] = cube.orientation;
+		}
+
+		state.set(locations, orientations);
+		updateSnapshot();
+	}
+
+	private void updateSnapshot() {
+		snapshot = (size == 3) ? CubeState.of(state) : null;
+	}
+
+	/**
+	 * Immutable copy of the puzzle that any thread can read without locking,
+	 * such as for hints, autosave or analytics. It is replaced after every
+	 * move, so a thread keeps the copy it read for as long as it needs it.
+	 * 
+	 * @return state of a 3x3 puzzle, or null for other sizes
+	 */
+	public CubeState getSnapshot() {
+		return snapshot;
 	}
 
 	/**
-	 * Find a layer of cubes along a specific axis
+	 * Layer index of a coordinate relative to the center of the puzzle
+	 * 
+	 * @param depth
+	 *            coordinate along an axis
+	 * @return 0 to size - 1
+	 */
+	private int getLayerIndex(float depth) {
+		return Math.round(depth + (size - 1) / 2f);
+	}
+
+	/**
+	 * Find the move code for a layer rotation
 	 * 
 	 * @param axis
 	 *            the axis of the layer
 	 * @param depth
 	 *            the depth the layer is along the axis
+	 * @return move code
+	 */
+	private int getMove(Vector3 axis, float depth) {
+		float direction = (axis.x != 0f) ? axis.x : (axis.y != 0f) ? axis.y
+				: axis.z;
+
+		return Move.encode((axis.x != 0f) ? Move.X : (axis.y != 0f) ? Move.Y
+				: Move.Z, getLayerIndex(depth),
+				(direction > 0f) ? Move.POSITIVE : Move.NEGATIVE);
+	}
+
+	/**
+	 * Find the layer of cubes a move rotates
+	 * 
+	 * @param move
+	 *            move code of the rotation
 	 * @return layer of cubes
 	 */
-	private Layer getLayer(Vector3 axis, float depth) {
-		Layer layer = new Layer(axis);
+	private Layer getLayer(int move) {
+		Layer layer = layers[move];
+		layer.clear();
 
-		for (Cube cube : cubes) {
-			// Compare our layer to the coordinate of the cube along our axis
-			if (depth == ((axis.x != 0f) ? cube.location.x
-					: (axis.y != 0f) ? cube.location.y
-							: (axis.z != 0f) ? cube.location.z : 0)) {
-				// We found a cube along our axis so add it to our layer
-				layer.addCube(cube);
-			}
+		// Look up the cubes currently in each slot of the layer
+		for (int slot : state.getGeometry().getLayerSlots(move)) {
+			layer.addCube(cubes[state.getCubeAt(slot)]);
 		}
 
 		return layer;
@@ -283,32 +564,31 @@ public class Puzzle implements Json.Serializable {
 		// We don't want to rotate in the middle of another rotation
 		if (!isLayerRotating) {
 			// Get the layer to rotate
-			Layer layer = getLayer(axis, depth);
+			int move = getMove(axis, depth);
+			Layer layer = getLayer(move);
 
 			// We want the locations after rotation
-			layer.updateLocations();
+			state.apply(move);
+			updateLocations(move);
 
 			if (allowUndo) {
-				try {
-					rotations.add(layer);
-				} catch (Exception e) {
-					rotations.clear();
-				}
+				history.add(move);
+				checkpoints.update(history, state);
 			}
 
 			moveCounter++;
-			if (callback != null) {
-				callback.moveCounterChanged(moveCounter);
-			}
+			normalizer.add(move);
+			visitPosition();
+			events.moveApplied(move, moveCounter);
 
 			if (rotationAnimation != RotationAnimation.NoAnimation) {
 				TweenCallback animationDone = new TweenCallback() {
 					@Override
 					public void onEvent(int type, BaseTween<?> source) {
 						isLayerRotating = false;
-						if (callback != null) {
-							callback.rotationComplete(isSolved());
-						}
+						rotatingLayer = null;
+						makePendingScramble();
+						events.rotationComplete(isSolved());
 					}
 				};
 
@@ -321,20 +601,15 @@ public class Puzzle implements Json.Serializable {
 						.setCallbackTriggers(TweenCallback.COMPLETE)
 						.start(tweenManager);
 
-				if (callback != null) {
-					callback.rotationStarted();
-				}
+				events.rotationStarted();
 
 				isLayerRotating = true;
+				rotatingLayer = layer;
 
 			} else {
-				if (callback != null) {
-					callback.rotationStarted();
-				}
+				events.rotationStarted();
 				layer.rotate(90f);
-				if (callback != null) {
-					callback.rotationComplete(isSolved());
-				}
+				events.rotationComplete(isSolved());
 			}
 		}
 	}
@@ -348,170 +623,273 @@ public class Puzzle implements Json.Serializable {
 	 *            depth of the layer in relation to the center of the puzzle
 	 */
 	public void rotateLayer(Vector3 axis, float depth) {
-		Layer layer = getLayer(axis, depth);
-		layer.updateLocations();
+		rotateLayer(getMove(axis, depth));
+	}
+
+	/**
+	 * Rotate a layer 90 degrees
+	 * 
+	 * @param move
+	 *            move code of the rotation
+	 */
+	public void rotateLayer(int move) {
+		Layer layer = getLayer(move);
+		state.apply(move);
+		updateLocations(move);
 		layer.rotate(90f);
 	}
 
 	public void undoRotation(float duration) {
-		if (!rotations.isEmpty() && !isLayerRotating) {
-			Layer layer = rotations.remove(rotations.size() - 1);
-			layer.reverse();
-			layer.updateLocations();
+		if (history.canUndo() && !isLayerRotating) {
+			rotateHistoryLayer(history.undo(), duration);
+		}
+	}
 
-			if (rotationAnimation != RotationAnimation.NoAnimation) {
-				TweenCallback animationDone = new TweenCallback() {
-					@Override
-					public void onEvent(int type, BaseTween<?> source) {
-						isLayerRotating = false;
-						if (callback != null) {
-							callback.rotationComplete(isSolved());
-						}
-					}
-				};
+	public void redoRotation(float duration) {
+		if (history.canRedo() && !isLayerRotating) {
+			rotateHistoryLayer(history.redo(), duration);
+		}
+	}
 
-				TweenEquation equation = (rotationAnimation == RotationAnimation.Bounce) ? TweenEquations.easeOutBack
-						: TweenEquations.easeInOutQuad;
+	/**
+	 * Go straight to another node of the history without animating. At most
+	 * the moves from the closest checkpoint above the node are applied, see
+	 * HistoryCheckpoints, so scrubbing through a long history stays fast.
+	 * 
+	 * @param node
+	 *            node of the history, see MoveTree
+	 */
+	public void jumpToHistory(int node) {
+		if (!isLayerRotating) {
+			checkpoints.seek(history, node, state, historyPath);
+			updateAllLocations();
 
-				// Start the rotation animation
-				Tween.to(layer, LayerTween.ROTATE, duration).target(90f)
-						.ease(equation).setCallback(animationDone)
-						.setCallbackTriggers(TweenCallback.COMPLETE)
-						.start(tweenManager);
+			events.rotationStarted();
+			for (int i = 0; i < historyPath.size(); i++) {
+				normalizer.add(historyPath.get(i));
+			}
+			visitPosition();
+			events.rotationComplete(isSolved());
+		}
+	}
 
-				if (callback != null) {
-					callback.rotationStarted();
+	/**
+	 * Rotate a layer for an undo or redo, which does not count as a move
+	 */
+	private void rotateHistoryLayer(int move, float duration) {
+		Layer layer = getLayer(move);
+		state.apply(move);
+		updateLocations(move);
+
+		// An undo cancels the move it undoes
+		normalizer.add(move);
+		visitPosition();
+
+		if (rotationAnimation != RotationAnimation.NoAnimation) {
+			TweenCallback animationDone = new TweenCallback() {
+				@Override
+				public void onEvent(int type, BaseTween<?> source) {
+					isLayerRotating = false;
+					rotatingLayer = null;
+					makePendingScramble();
+					events.rotationComplete(isSolved());
 				}
+			};
 
-				isLayerRotating = true;
+			TweenEquation equation = (rotationAnimation == RotationAnimation.Bounce) ? TweenEquations.easeOutBack
+					: TweenEquations.easeInOutQuad;
 
-			} else {
-				if (callback != null) {
-					callback.rotationStarted();
-				}
-				layer.rotate(90f);
-				if (callback != null) {
-					callback.rotationComplete(isSolved());
-				}
-			}
+			// Start the rotation animation
+			Tween.to(layer, LayerTween.ROTATE, duration).target(90f)
+					.ease(equation).setCallback(animationDone)
+					.setCallbackTriggers(TweenCallback.COMPLETE)
+					.start(tweenManager);
+
+			events.rotationStarted();
+
+			isLayerRotating = true;
+			rotatingLayer = layer;
+
+		} else {
+			events.rotationStarted();
+			layer.rotate(90f);
+			events.rotationComplete(isSolved());
 		}
 	}
 
 	/**
-	 * Randomly scrambles the puzzle
+	 * Apply a compiled algorithm at once, without animating or sending
+	 * events. The moves are not counted and can not be undone. The cubes
+	 * are only updated once at the end, so long algorithms cost little more
+	 * than the puzzle state moves.
 	 * 
-	 * @param rotations
-	 *            number of times to rotate random layers
+	 * @param moves
+	 *            move codes from Notation.compile for this puzzle size
 	 */
-	public void scramble(int rotations) {
-		int lastAxis = 0;
-		for (int i = 0; i < rotations; i++) {
-			// Randomly pick the X, Y, or Z axis
-			int randomAxis = MathUtils.random(1, 3);
-
-			// Make sure we don't rotate the same axis twice in a row
-			while (randomAxis == lastAxis) {
-				randomAxis = MathUtils.random(1, 3);
-			}
+	public void apply(byte[] moves) {
+		if (isLayerRotating) {
+			throw new IllegalStateException("A layer is rotating");
+		}
 
-			lastAxis = randomAxis;
+		state.apply(moves);
+		updateAllLocations();
 
-			// Randomly pick whether to rotate forward or backward
-			int randomDirection = (MathUtils.random(1, 2) == 1) ? -1 : 1;
+		// The history no longer leads to the saved states
+		checkpoints.invalidate();
+	}
 
-			// Randomly pick a depth along the axis
-			int randomDepth = MathUtils.random(-1, 1);
+	/**
+	 * Apply a permutation at once, like apply(byte[]). A replay can be seeked
+	 * by composing the permutations of its segments, and an algorithm
+	 * repeated many times with CubePermutation.power.
+	 * 
+	 * @param permutation
+	 *            permutation for this puzzle size
+	 */
+	public void apply(CubePermutation permutation) {
+		if (isLayerRotating) {
+			throw new IllegalStateException("A layer is rotating");
+		}
 
-			Vector3 axis = new Vector3(
-					(randomAxis == 1) ? randomDirection : 0f,
-					(randomAxis == 2) ? randomDirection : 0f,
-					(randomAxis == 3) ? randomDirection : 0f);
+		state.apply(permutation);
+		updateAllLocations();
 
-			// Rotate the layer
-			rotateLayer(axis, randomDepth);
+		checkpoints.invalidate();
+	}
+
+	/**
+	 * Randomly scrambles the puzzle
+	 * 
+	 * @param rotations
+	 *            number of times to rotate random layers
+	 */
+	public void scramble(int rotations) {
+		byte[] moves = Scrambler.generate(size, rotations, MathUtils.random);
+		for (int i = 0; i < moves.length; i++) {
+			rotateLayer(moves[i]);
 		}
+
+		checkpoints.invalidate();
+		visitedPositions.clear();
+		visitPosition();
 	}
 
 	/**
-	 * Check if the puzzle is solved.
+	 * Scramble the puzzle to a random position, every position being equally
+	 * likely. The scramble is found on the solver thread and made on the
+	 * render thread once it is ready, or once the layer rotating then stops.
+	 * The undo history and move counts start over from the scrambled
+	 * position. Only 3x3 puzzles can be scrambled this way, other sizes are
+	 * scrambled with random moves straight away.
 	 * 
-	 * @return true if the puzzle is solved
+	 * @param random
+	 *            source of random numbers
 	 */
-	public boolean isSolved() {
-		// Loop through all 6 faces
-		for (int i = 0; i < 6; i++) {
-			// Get rotation of first cube on the current face
-			cubeRotation.setFromMatrix(cubes[faces[i][0]].rotation);
-
-			// Get the rotation vectors of the first cube
-			forwardVector = getForwardVector(cubeRotation);
-			upVector = getUpVector(cubeRotation);
-			rightVector = getRightVector(cubeRotation);
-
-			// Loop through all corner and edge cubes on current face
-			for (int j = 0; j < 8; j++) {
-				// Make sure correct cubes are surrounding the center cube
-				if (cubes[centers[i]].location.dst(cubes[faces[i][j]].location) > 2f) {
-					return false;
-				}
+	public void scrambleRandomState(Random random) {
+		if (size != 3) {
+			scramble(PuzzleCube.PUZZLE_SCRAMBLE_ROTATIONS);
+			return;
+		}
 
-				// Get rotation of the current cube
-				cubeRotation.setFromMatrix(cubes[faces[i][j]].rotation);
+		BackgroundSolver.generateScramble(random, new SolutionCallback() {
+			@Override
+			public void solutionFound(byte[] moves) {
+				synchronized (Puzzle.this) {
+					// The puzzle may have been loaded with another size since
+					if (size != 3) {
+						return;
+					}
 
-				// Make sure cubes are all oriented the same way
-				if (!forwardVector.idt(getForwardVector(cubeRotation))
-						|| !upVector.idt(getUpVector(cubeRotation))
-						|| !rightVector.idt(getRightVector(cubeRotation))) {
-					return false;
+					pendingScramble = moves;
+					if (!isLayerRotating) {
+						makePendingScramble();
+					}
 				}
 			}
+		});
+	}
+
+	/**
+	 * Make the scramble from scrambleRandomState, if one is waiting
+	 */
+	private void makePendingScramble() {
+		if (pendingScramble == null) {
+			return;
 		}
 
-		return true;
+		for (int i = 0; i < pendingScramble.length; i++) {
+			rotateLayer(pendingScramble[i]);
+		}
+		pendingScramble = null;
+
+		// Moves made before the scramble can not be undone from it
+		history.clear();
+		checkpoints.invalidate();
+		normalizer.clear();
+		moveCounter = 0;
+		visitedPositions.clear();
+		visitPosition();
 	}
 
-	private Vector3 getForwardVector(Quaternion q) {
-		Vector3 v = new Vector3(2 * (q.x * q.z + q.w * q.y),
-				2 * (q.y * q.x - q.w * q.x), 1 - 2 * (q.x * q.x + q.y * q.y));
-		v.nor();
-		v.x = (Math.abs(v.x) != 1) ? 0 : v.x;
-		v.y = (Math.abs(v.y) != 1) ? 0 : v.y;
-		v.z = (Math.abs(v.z) != 1) ? 0 : v.z;
+	/**
+	 * Find moves that solve the puzzle as it is now, for solving it
+	 * automatically or giving a hint. The search runs on the solver thread,
+	 * so the puzzle may have moved on by the time the solution arrives.
+	 * 
+	 * @param callback
+	 *            gets the move codes on the render thread, at most
+	 *            TwoPhaseSolver.DEFAULT_LENGTH face turns
+	 * @return false if the puzzle is not a 3x3 and can not be solved
+	 */
+	public boolean findSolution(SolutionCallback callback) {
+		CubeState state = snapshot;
+		if (state == null) {
+			return false;
+		}
 
-		return v;
+		BackgroundSolver.solve(state, TwoPhaseSolver.DEFAULT_LENGTH, callback);
+		return true;
 	}
 
-	private Vector3 getUpVector(Quaternion q) {
-		Vector3 v = new Vector3(2 * (q.x * q.y - q.w * q.z),
-				1 - 2 * (q.x * q.x + q.z * q.z), 2 * (q.y * q.z + q.w * q.x));
-		v.nor();
-		v.x = (Math.abs(v.x) != 1) ? 0 : v.x;
-		v.y = (Math.abs(v.y) != 1) ? 0 : v.y;
-		v.z = (Math.abs(v.z) != 1) ? 0 : v.z;
-
-		return v;
+	/**
+	 * Check if the puzzle is solved. Turning the whole puzzle does not change
+	 * this.
+	 * 
+	 * @return true if the puzzle is solved
+	 */
+	public boolean isSolved() {
+		return state.isSolved();
 	}
 
-	private Vector3 getRightVector(Quaternion q) {
-		Vector3 v = new Vector3(1 - 2 * (q.y * q.y + q.z * q.z),
-				2 * (q.x * q.y + q.w * q.z), 2 * (q.x * q.z - q.w * q.y));
-		v.nor();
-		v.x = (Math.abs(v.x) != 1) ? 0 : v.x;
-		v.y = (Math.abs(v.y) != 1) ? 0 : v.y;
-		v.z = (Math.abs(v.z) != 1) ? 0 : v.z;
+	/**
+	 * Number of cubes that are not in place, compared to the solved puzzle
+	 * turned whichever way leaves the fewest out of place. On puzzles larger
+	 * than 3x3 the center cubes of a face look the same, so they only have to
+	 * be on the right face.
+	 * 
+	 * @return 0 when solved
+	 */
+	public int getPiecesOutOfPlace() {
+		return state.getPiecesOutOfPlace();
+	}
 
-		return v;
+	/**
+	 * Check if every sticker on a face is the same color
+	 * 
+	 * @param face
+	 *            face of the puzzle, in the same order as the puzzle colors:
+	 *            bottom, top, back, front, left, right
+	 * @return true if the face is solved
+	 */
+	public boolean isFaceSolved(int face) {
+		return state.isFaceSolved(face);
 	}
 
 	public void explode() {
 		Timeline timeline = Timeline.createParallel();
 
-		Layer[] layers = new Layer[3];
-		layers[0] = getLayer(new Vector3(1, 0, 0), -1);
-		layers[1] = getLayer(new Vector3(1, 0, 0), 0);
-		layers[2] = getLayer(new Vector3(1, 0, 0), 1);
-
-		for (Layer layer : layers) {
+		for (int i = 0; i < size; i++) {
+			Layer layer = getLayer(Move.encode(Move.X, i, Move.POSITIVE));
 			timeline.push(Tween.to(layer, LayerTween.EXPLODE, 3f).target(40f)
 					.ease(TweenEquations.easeNone));
 		}
@@ -540,10 +918,15 @@ public class Puzzle implements Json.Serializable {
 	public void write(Json json) {
 		json.writeValue("Seconds", secondsElapsed);
 		json.writeValue("Moves", moveCounter);
+		json.writeValue("Turns", normalizer.toArray(), byte[].class);
+		json.writeValue("Size", size);
 		json.writeValue("Cubes", cubes, Cube[].class);
 		json.writeValue("Camera", camera, PuzzleCamera.class);
 		json.writeValue("Colors", colors, float[].class);
 		json.writeValue("Rotation", rotationAnimation.ordinal(), int.class);
+		json.writeValue("HistoryMoves", history.getMoves(), byte[].class);
+		json.writeValue("HistoryParents", history.getParents(), int[].class);
+		json.writeValue("HistoryNode", history.getCurrent());
 	}
 
 	/**
@@ -555,11 +938,35 @@ public class Puzzle implements Json.Serializable {
 
 		moveCounter = json.readValue("Moves", long.class, jsonData);
 
+		// Games saved before the size was saved are 3x3
+		int size = json.readValue("Size", int.class, 3, jsonData);
+		if (size != this.size) {
+			setSize(size);
+		}
+
+		// Games saved before the turns were saved count from the load
+		normalizer.clear();
+		byte[] turns = json.readValue("Turns", byte[].class, jsonData);
+		if (turns != null) {
+			boolean isValid = true;
+			for (byte turn : turns) {
+				isValid &= ((turn & 0xff) >> 2) / 3 < size;
+			}
+
+			if (isValid) {
+				normalizer.set(turns);
+			}
+		}
+
 		Cube[] cubes = json.readValue("Cubes", Cube[].class, jsonData);
 		if (cubes != null) {
 			this.cubes = cubes;
+			updateState();
 		}
 
+		visitedPositions.clear();
+		visitPosition();
+
 		PuzzleCamera camera = json.readValue("Camera", PuzzleCamera.class,
 				jsonData);
 		if (camera != null) {
@@ -570,10 +977,32 @@ public class Puzzle implements Json.Serializable {
 		if (mesh != null) {
 			mesh.dispose();
 		}
-		mesh = new PuzzleMesh(colors, 1f);
+		mesh = new PuzzleMesh(size, colors);
 
 		rotationAnimation = RotationAnimation.values()[json.readValue(
 				"Rotation", int.class, jsonData)];
+
+		// Games saved before the history was saved can not be undone
+		history.clear();
+		checkpoints.invalidate();
+		byte[] moves = json.readValue("HistoryMoves", byte[].class, jsonData);
+		int[] parents = json.readValue("HistoryParents", int[].class, jsonData);
+		if (moves != null && parents != null) {
+			int moveCount = state.getGeometry().getMoveCount();
+			boolean isValid = true;
+			for (int i = 1; i < moves.length; i++) {
+				isValid &= (moves[i] >= 0 && moves[i] < moveCount);
+			}
+
+			try {
+				if (isValid) {
+					history.set(moves, parents, json.readValue("HistoryNode",
+							int.class, jsonData));
+				}
+			} catch (IllegalArgumentException e) {
+				history.clear();
+			}
+		}
 	}
 
 	public void dispose() {
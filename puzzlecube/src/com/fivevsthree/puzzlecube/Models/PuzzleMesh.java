@@ -7,137 +7,221 @@ import com.badlogic.gdx.graphics.VertexAttribute;
 import com.badlogic.gdx.graphics.VertexAttributes.Usage;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
 import com.badlogic.gdx.math.collision.Ray;
 
 /**
- * A static mesh created from multiple cubes for fast rendering
+ * Static meshes created from the stickers of multiple cubes for fast
+ * rendering. The stickers are built on a background thread by
+ * PuzzleMeshBuilder and copied into meshes the first time the puzzle is drawn
+ * after they are ready.
  * 
  * @author splude@fivevsthree.com
  * 
  */
 public class PuzzleMesh {
 
+	private int size;
+
 	private float scale;
 
-	private Mesh mesh;
+	private PuzzleMeshBuilder builder;
+
+	// One mesh for each chunk of stickers, null until the builder is done
+	private Mesh[] meshes;
+
+	// Dark square that covers the inside of the puzzle while a layer turns
+	private Mesh cap;
 
-	// Copy of vertex positions for ray picking
-	private float[] rayPickVertices = new float[1872];
-	// Copy of indices for ray picking
-	private short[] rayPickIndices = new short[936];
+	private Matrix4[] capOrientations;
+	private Matrix4 capRotation;
+	private Vector3 capTranslation;
+	private Vector3 capAxis;
+
+	// Outside of the puzzle for ray picking
+	private BoundingBox bounds;
+
+	private Vector3 intersection;
 
 	/**
-	 * Create a mesh with the provided colors and scale
+	 * Create a mesh with the provided colors. The cubes are scaled so every
+	 * puzzle size takes up the same space as a 3x3 puzzle with cubes of size 1.
 	 * 
+	 * @param size
+	 *            number of cubes along each edge of the puzzle
 	 * @param colors
 	 *            array of 6 color packed floats for each puzzle face
-	 * @param scale
-	 *            size of each cube
 	 */
-	public PuzzleMesh(float[] colors, float scale) {
-		this.scale = scale;
-
-		mesh = new Mesh(true, 624, 936, new VertexAttribute(Usage.Position, 3,
-				ShaderProgram.POSITION_ATTRIBUTE), new VertexAttribute(
-				Usage.Normal, 3, ShaderProgram.NORMAL_ATTRIBUTE),
-				new VertexAttribute(Usage.TextureCoordinates, 2,
-						ShaderProgram.TEXCOORD_ATTRIBUTE), new VertexAttribute(
-						Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE));
-
-		// 4 vertices * 9 components * 6 faces
-		int size = 216;
-
-		float[] vertices = new float[26 * size];
-
-		// x = -1 : left, x = 0 : center, x = 1 : right
-		for (int i = 0, x = -1; x < 2; x++) {
-			// y = -1 : bottom, y = 0 : center, y = 1 : top
-			for (int y = -1; y < 2; y++) {
-				// z = -1 : back, z = 0 center, z = 1 : front
-				for (int z = -1; z < 2; z++) {
-					// 0, 0, 0 is center cube which is not created
-					if (x == 0 && y == 0 && z == 0) {
-						// If we are at the center then skip to the next cube
-						continue;
-					}
-
-					// Calculate vertices for current cube
-					float[] v = calculateVertices(x, y, z);
+	public PuzzleMesh(int size, float[] colors) {
+		this.size = size;
+		this.scale = 3f / size;
 
-					// Calculate texture coordinates for current cube
-					float[] t = calculateTexCoords(x, y, z);
+		builder = new PuzzleMeshBuilder(size, colors, scale);
+		builder.start();
 
-					float[] c = calculateColors(colors, x, y, z);
+		createCap();
 
-					// Get normals for current cube
-					float[] n = getNormals();
-
-					// Calculate indices for current cube
-					short[] d = calculateIndices(i);
-
-					int vIndex = 0;
-					int nIndex = 0;
-					int tIndex = 0;
-					int cIndex = 0;
+		bounds = new BoundingBox(new Vector3(-3f, -3f, -3f), new Vector3(3f,
+				3f, 3f));
+		intersection = new Vector3();
+	}
 
-					// Loop through each vertex of the cube
-					for (int j = 0, k = 0; j < size;) {
-						// Add coordinates for current vertex
-						rayPickVertices[i * 72 + k++] = v[vIndex];
-						vertices[i * size + j++] = v[vIndex++];
+	private static Mesh createMesh(int vertices, int indices) {
+		return new Mesh(true, vertices, indices, new VertexAttribute(
+				Usage.Position, 3, ShaderProgram.POSITION_ATTRIBUTE),
+				new VertexAttribute(Usage.Normal, 3,
+						ShaderProgram.NORMAL_ATTRIBUTE), new VertexAttribute(
+						Usage.TextureCoordinates, 2,
+						ShaderProgram.TEXCOORD_ATTRIBUTE), new VertexAttribute(
+						Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE));
+	}
 
-						rayPickVertices[i * 72 + k++] = v[vIndex];
-						vertices[i * size + j++] = v[vIndex++];
+	/**
+	 * Create a square the size of the puzzle facing both ways along z
+	 */
+	private void createCap() {
+		float color = Color.toFloatBits(38, 38, 38, 255);
 
-						rayPickVertices[i * 72 + k++] = v[vIndex];
-						vertices[i * size + j++] = v[vIndex++];
+		// @formatter:off
 
-						// Add normals for current vertex
-						vertices[i * size + j++] = n[nIndex++];
-						vertices[i * size + j++] = n[nIndex++];
-						vertices[i * size + j++] = n[nIndex++];
+		cap = createMesh(4, 12);
+		cap.setVertices(new float[] {
+				-3f,  3f, 0f,  0f, 0f, 1f,  0.5f, 0.5f,  color,
+				-3f, -3f, 0f,  0f, 0f, 1f,  0.5f, 0.5f,  color,
+				 3f, -3f, 0f,  0f, 0f, 1f,  0.5f, 0.5f,  color,
+				 3f,  3f, 0f,  0f, 0f, 1f,  0.5f, 0.5f,  color, });
 
-						// Add texture coordinates for current vertex
-						vertices[i * size + j++] = t[tIndex++];
-						vertices[i * size + j++] = t[tIndex++];
+		// Counter clockwise from the front, then from the back
+		cap.setIndices(new short[] {
+				0, 1, 2,  0, 2, 3,
+				0, 2, 1,  0, 3, 2, });
 
-						// Add colors for current vertex
-						vertices[i * size + j++] = c[cIndex++];
-					}
+		// @formatter:on
 
-					for (int j = 0; j < 36; j++) {
-						// Add indices for current cube
-						rayPickIndices[i * 36 + j] = d[j];
-					}
+		// Turn the square to face along each axis
+		capOrientations = new Matrix4[3];
+		capOrientations[Move.X] = new Matrix4().rotate(new Vector3(0f, 1f, 0f),
+				90f);
+		capOrientations[Move.Y] = new Matrix4().rotate(new Vector3(1f, 0f, 0f),
+				90f);
+		capOrientations[Move.Z] = new Matrix4();
+
+		capRotation = new Matrix4();
+		capTranslation = new Vector3();
+		capAxis = new Vector3();
+	}
 
-					// Advance to next cube
-					i++;
-				}
+	/**
+	 * Copy the chunks into meshes once the builder is done
+	 * 
+	 * @return true if the meshes are ready to draw
+	 */
+	private boolean isLoaded() {
+		if (meshes == null && builder != null && builder.isDone()) {
+			float[][] vertices = builder.getVertices();
+			short[][] indices = builder.getIndices();
+
+			meshes = new Mesh[vertices.length];
+			for (int i = 0; i < meshes.length; i++) {
+				meshes[i] = createMesh(vertices[i].length
+						/ PuzzleMeshBuilder.VERTEX_SIZE, indices[i].length);
+				meshes[i].setVertices(vertices[i]);
+				meshes[i].setIndices(indices[i]);
 			}
 		}
 
-		mesh.setVertices(vertices);
-		mesh.setIndices(rayPickIndices);
+		return meshes != null;
 	}
 
 	/**
-	 * Render a cube
+	 * Render a cube. Nothing is drawn until the mesh has been built.
 	 * 
 	 * @param cubeIndex
 	 *            index of the cube in the mesh
 	 */
 	public void render(ShaderProgram shader, int cubeIndex) {
-		if (shader != null && shader.isCompiled()) {
-			// There are 36 vertices per cube
-			mesh.render(shader, GL20.GL_TRIANGLES, cubeIndex * 36, 36);
+		if (shader != null && shader.isCompiled() && isLoaded()) {
+			// Each sticker has 6 indices
+			meshes[builder.getCubeChunk(cubeIndex)].render(shader,
+					GL20.GL_TRIANGLES, builder.getCubeOffset(cubeIndex),
+					builder.getCubeCount(cubeIndex));
+		}
+	}
+
+	/**
+	 * Cover the inside of the puzzle on both sides of a turning layer. Only
+	 * the outside stickers are in the mesh, so without this the puzzle would
+	 * look hollow while a layer turns.
+	 * 
+	 * @param layer
+	 *            layer that is turning
+	 */
+	public void renderCaps(ShaderProgram shader, Layer layer) {
+		renderCaps(shader, layer.getMove(), layer.getAngle());
+	}
+
+	/**
+	 * Cover the inside of the puzzle around a turning layer, see
+	 * renderCaps(ShaderProgram, Layer)
+	 * 
+	 * @param move
+	 *            move code of the turning layer
+	 * @param angle
+	 *            degrees the layer has turned so far
+	 */
+	public void renderCaps(ShaderProgram shader, int move, float angle) {
+		if (shader == null || !shader.isCompiled()) {
+			return;
+		}
+
+		int axis = Move.getAxis(move);
+		int index = Move.getLayer(move);
+
+		// The layer turns about its axis, pointing the way of the move
+		float direction = (Move.getDirection(move) == Move.POSITIVE) ? 1f
+				: -1f;
+		capAxis.set((axis == Move.X) ? direction : 0f,
+				(axis == Move.Y) ? direction : 0f,
+				(axis == Move.Z) ? direction : 0f);
+
+		// Each cube is 2 * scale wide
+		float center = (index - (size - 1) / 2f) * scale * 2f;
+
+		for (int side = -1; side <= 1; side += 2) {
+			// The outside of the puzzle does not need to be covered
+			if ((side < 0 && index == 0) || (side > 0 && index == size - 1)) {
+				continue;
+			}
+
+			capTranslation.set(Vector3.Zero);
+			if (axis == Move.X) {
+				capTranslation.x = center + side * scale;
+			} else if (axis == Move.Y) {
+				capTranslation.y = center + side * scale;
+			} else {
+				capTranslation.z = center + side * scale;
+			}
+
+			// The side that stays still
+			capRotation.idt().translate(capTranslation)
+					.mul(capOrientations[axis]);
+			shader.setUniformMatrix("u_rotation", capRotation);
+			cap.render(shader, GL20.GL_TRIANGLES, 0, 12);
+
+			// The side that turns with the layer
+			capRotation.idt().rotate(capAxis, angle)
+					.translate(capTranslation).mul(capOrientations[axis]);
+			shader.setUniformMatrix("u_rotation", capRotation);
+			cap.render(shader, GL20.GL_TRIANGLES, 0, 12);
 		}
 	}
 
 	/**
 	 * Determine the logical cube hit based off the position of the ray
-	 * intersection with the mesh. Because the mesh is static, this hit test
-	 * will not work with scaled or translated cubes
+	 * intersection with the outside of the puzzle. Because the mesh is
+	 * static, this hit test will not work with scaled or translated cubes
 	 * 
 	 * @param ray
 	 *            ray from the camera
@@ -148,20 +232,15 @@ public class PuzzleMesh {
 	 * @return was a cube was hit
 	 */
 	public boolean getPickRayHit(Ray ray, float[] location, float[] axis) {
-		Vector3 intersection = new Vector3();
-
-		// Was a cube hit and which cube was hit
-		boolean isHit = Intersector.intersectRayTriangles(ray, rayPickVertices,
-				rayPickIndices, 3, intersection);
+		// The puzzle is a solid cube, so the first hit is on its outside
+		boolean isHit = Intersector.intersectRayBounds(ray, bounds,
+				intersection);
 
 		if (isHit) {
 			// Calculate the logical cube location from the mesh position
-			location[0] = Math.round(Math.min(
-					Math.max(intersection.x / scale, -2.9), 2.9) / 2);
-			location[1] = Math.round(Math.min(
-					Math.max(intersection.y / scale, -2.9), 2.9) / 2);
-			location[2] = Math.round(Math.min(
-					Math.max(intersection.z / scale, -2.9), 2.9) / 2);
+			location[0] = getPickLocation(intersection.x);
+			location[1] = getPickLocation(intersection.y);
+			location[2] = getPickLocation(intersection.z);
 
 			// We only want positive values
 			float x = Math.abs(intersection.x);
@@ -191,253 +270,36 @@ public class PuzzleMesh {
 	}
 
 	/**
-	 * Calculate the vertices for a cube a the given location
+	 * Logical location of the cube at a mesh position along one axis
 	 * 
-	 * @param x
-	 *            x position relative to center of puzzle
-	 * @param y
-	 *            y position relative to center of puzzle
-	 * @param z
-	 *            z position relative to center of puzzle
-	 * @return array of vertices
+	 * @param position
+	 *            position on the outside of the puzzle
+	 * @return location relative to the center of the puzzle
 	 */
-	private float[] calculateVertices(float x, float y, float z) {
-		// Move coordinates to fit cubes according to their size
-		x *= scale * 2f;
-		y *= scale * 2f;
-		z *= scale * 2f;
+	private float getPickLocation(float position) {
+		// Each cube is 2 * scale wide, keep the position inside the puzzle
+		float cubes = Math.min(Math.max(position / scale, -size + 0.1f),
+				size - 0.1f);
 
-		// @formatter:off
-
-		// 0|      |3
-		//  |      |
-		// 1|______|2
-	
-		float[] vertices = {
-				// Bottom
-				x + scale, y - scale, z - scale,
-				x + scale, y - scale, z + scale,
-				x - scale, y - scale, z + scale,
-				x - scale, y - scale, z - scale,
-
-				// Top
-				x - scale, y + scale, z - scale,
-				x - scale, y + scale, z + scale,
-				x + scale, y + scale, z + scale,
-				x + scale, y + scale, z - scale,
-
-				// Back
-				x + scale, y + scale, z - scale,
-				x + scale, y - scale, z - scale,
-				x - scale, y - scale, z - scale,
-				x - scale, y + scale, z - scale,
-
-				// Front
-				x - scale, y + scale, z + scale,
-				x - scale, y - scale, z + scale,
-				x + scale, y - scale, z + scale,
-				x + scale, y + scale, z + scale,
-
-				// Left
-				x - scale, y + scale, z - scale,
-				x - scale, y - scale, z - scale,
-				x - scale, y - scale, z + scale,
-				x - scale, y + scale, z + scale,
-
-
-				// Right
-				x + scale, y + scale, z + scale,
-				x + scale, y - scale, z + scale,
-				x + scale, y - scale, z - scale,
-				x + scale, y + scale, z - scale, };
-		
-		// @formatter:on
-
-		return vertices;
-	}
-
-	/**
-	 * Return an array of texture coordinates for each face of a cube
-	 * 
-	 * @param x
-	 *            x position relative to center of puzzle
-	 * @param y
-	 *            y position relative to center of puzzle
-	 * @param z
-	 *            z position relative to center of puzzle
-	 * @return array of texture coordinates
-	 */
-	private float[] calculateTexCoords(int x, int y, int z) {
-		// @formatter:off
-			
-		// Texture coordinates are not affected by index order, but vertex
-			
-		// order does matter
-		// 0,0|      |1,0
-		//    |      |
-		// 0,1|______|1,1
-			
-		// @formatter:on
-
-		return new float[] {
-				// Bottom
-				0f, 0f, 0f, 1f, 1f, 1f, 1f, 0f,
-
-				// Top
-				0f, 0f, 0f, 1f, 1f, 1f, 1f, 0f,
-
-				// Back
-				0f, 0f, 0f, 1f, 1f, 1f, 1f, 0f,
-
-				// Front
-				0f, 0f, 0f, 1f, 1f, 1f, 1f, 0f,
-
-				// Left
-				0f, 0f, 0f, 1f, 1f, 1f, 1f, 0f,
-
-				// Right
-				0f, 0f, 0f, 1f, 1f, 1f, 1f, 0f };
+		return (int) ((cubes + size) / 2f) - (size - 1) / 2f;
 	}
 
 	/**
-	 * Return an array of colors for each face of a cube
-	 * 
-	 * @param colors
-	 *            float array of colors( r, g, b, a for 6 puzzle faces)
-	 * @param x
-	 * @param y
-	 * @param z
-	 * @return
+	 * Clean up
 	 */
-	private float[] calculateColors(float[] colors, int x, int y, int z) {
-		float[] faces = new float[24];
-
-		// Loop through all faces of a cube
-		for (int i = 0; i < 6; i++) {
-			for (int j = 0; j < 4; j++) {
-				// If the face belongs to a face of the puzzle then color it
-				if ((i == 0 && y == -1) || (i == 1 && y == 1)
-						|| (i == 2 && z == -1) || (i == 3 && z == 1)
-						|| (i == 4 && x == -1) || (i == 5 && x == 1)) {
-					faces[i * 4 + j] = Color.toFloatBits(colors[i * 3],
-							colors[i * 3 + 1], colors[i * 3 + 2], 1f);
-				} else {
-					// The face does not belong to a puzzle face so make it dark
-					faces[i * 4 + j] = Color.toFloatBits(38, 38, 38, 255);
-				}
+	public void dispose() {
+		if (meshes != null) {
+			for (Mesh mesh : meshes) {
+				mesh.dispose();
 			}
+			meshes = null;
 		}
 
-		return faces;
-	}
-
-	/**
-	 * Get normals for each face of the cube
-	 * 
-	 * @return array of normals
-	 */
-	private float[] getNormals() {
-		// @formatter:off
-		
-		float[] normals = {
-				// Bottom
-				 0f, -1f,  0f,
-				 0f, -1f,  0f,
-				 0f, -1f,  0f,
-				 0f, -1f,  0f,
-
-				// Top
-				 0f,  1f,  0f,
-				 0f,  1f,  0f,
-				 0f,  1f,  0f,
-				 0f,  1f,  0f,
-
-				// Back
-				 0f,  0f, -1f,
-				 0f,  0f, -1f,
-				 0f,  0f, -1f,
-				 0f,  0f, -1f,
-
-				// Front
-				 0f,  0f,  1f,
-				 0f,  0f,  1f,
-				 0f,  0f,  1f,
-				 0f,  0f,  1f,
-
-				// Left
-				-1f,  0f,  0f,
-				-1f,  0f,  0f,
-				-1f,  0f,  0f,
-				-1f,  0f,  0f,
-
-				// Right
-				 1f,  0f,  0f,
-				 1f,  0f,  0f,
-				 1f,  0f,  0f,
-				 1f,  0f,  0f, };
-		
-		// @formatter:on
-
-		return normals;
-	}
-
-	/**
-	 * Calculate indices for each cube. Indices use vertices to determine the
-	 * shape of the cube
-	 * 
-	 * @param cubeIndex
-	 *            offset of cube in the mesh
-	 * @return array of indices
-	 */
-	private short[] calculateIndices(int cubeIndex) {
-		// There are 24 indices per cube
-		int i = cubeIndex * 24;
-
-		// @formatter:off
-		
-		// Face made up of two triangles, each made up of 3 indices, counter clockwise
-		
-		// 0|       0\  |3 
-		//  |         \ |
-		// 1|____2     \|2
-
-		short[] indices = {
-				// Bottom
-				(short) (0 + i), (short) (1 + i), (short) (2 + i),
-				(short) (0 + i), (short) (2 + i), (short) (3 + i),
-
-				// Top
-				(short) (4 + i), (short) (5 + i), (short) (6 + i),
-				(short) (4 + i), (short) (6 + i), (short) (7 + i),
-
-				// Back
-				(short) (8 + i), (short) (9 + i), (short) (10 + i),
-				(short) (8 + i), (short) (10 + i), (short) (11 + i),
-
-				// Front
-				(short) (12 + i), (short) (13 + i), (short) (14 + i),
-				(short) (12 + i), (short) (14 + i), (short) (15 + i),
-
-				// Left
-				(short) (16 + i), (short) (17 + i), (short) (18 + i),
-				(short) (16 + i), (short) (18 + i), (short) (19 + i),
-
-				// Right
-				(short) (20 + i), (short) (21 + i), (short) (22 + i),
-				(short) (20 + i), (short) (22 + i), (short) (23 + i), };
-
-		// @formatter:on
-
-		return indices;
-	}
-
-	/**
-	 * Clean up
-	 */
-	public void dispose() {
-		if (mesh != null) {
-			mesh.dispose();
-			mesh = null;
+		if (cap != null) {
+			cap.dispose();
+			cap = null;
 		}
+
+		builder = null;
 	}
 }
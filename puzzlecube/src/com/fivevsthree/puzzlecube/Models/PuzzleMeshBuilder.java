@@ -0,0 +1,224 @@
+package com.fivevsthree.puzzlecube.Models;
+
+import com.badlogic.gdx.graphics.Color;
+
+/**
+ * Builds the vertices and indices of a puzzle mesh on a background thread.
+ * Only the stickers facing out of the puzzle are built, and the stickers are
+ * split into chunks that each fit in 16-bit indices. The stickers of a cube
+ * are always in the same chunk so each cube can still be drawn on its own.
+ * Creating the meshes from the arrays has to happen on the render thread.
+ */
+public class PuzzleMeshBuilder implements Runnable {
+
+	/**
+	 * Position, normal, texture coordinates and packed color
+	 */
+	public static final int VERTEX_SIZE = 9;
+
+	/**
+	 * Most stickers in one chunk, 4 vertices each must fit in an unsigned
+	 * short index
+	 */
+	public static final int MAX_CHUNK_STICKERS = 16383;
+
+	// @formatter:off
+
+	// Corners of each face of a cube, in the same order as the faces of the
+	// puzzle, counter clockwise from the outside
+	private static final int[][] CORNERS = {
+			// Bottom
+			{ 1, -1, -1,   1, -1,  1,  -1, -1,  1,  -1, -1, -1 },
+
+			// Top
+			{ -1,  1, -1,  -1,  1,  1,   1,  1,  1,   1,  1, -1 },
+
+			// Back
+			{ 1,  1, -1,   1, -1, -1,  -1, -1, -1,  -1,  1, -1 },
+
+			// Front
+			{ -1,  1,  1,  -1, -1,  1,   1, -1,  1,   1,  1,  1 },
+
+			// Left
+			{ -1,  1, -1,  -1, -1, -1,  -1, -1,  1,  -1,  1,  1 },
+
+			// Right
+			{ 1,  1,  1,   1, -1,  1,   1, -1, -1,   1,  1, -1 } };
+
+	// Texture coordinates of the corners of a face
+	private static final float[] TEX_COORDS = { 0f, 0f, 0f, 1f, 1f, 1f, 1f, 0f };
+
+	// @formatter:on
+
+	private final int size;
+	private final float scale;
+	private final float[] colors;
+
+	private float[][] vertices;
+	private short[][] indices;
+
+	// Chunk, first index and number of indices of each cube
+	private int[] cubeChunks, cubeOffsets, cubeCounts;
+
+	private volatile boolean isDone;
+
+	/**
+	 * Create a builder
+	 * 
+	 * @param size
+	 *            number of cubes along each edge of the puzzle
+	 * @param colors
+	 *            r, g and b for each puzzle face
+	 * @param scale
+	 *            size of each cube
+	 */
+	public PuzzleMeshBuilder(int size, float[] colors, float scale) {
+		this.size = size;
+		this.scale = scale;
+		this.colors = colors.clone();
+	}
+
+	/**
+	 * Build the mesh on a new background thread
+	 */
+	public void start() {
+		Thread thread = new Thread(this, "PuzzleMeshBuilder");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Check if the arrays are ready to be copied into meshes
+	 * 
+	 * @return true once building has finished
+	 */
+	public boolean isDone() {
+		return isDone;
+	}
+
+	@Override
+	public void run() {
+		PuzzleGeometry geometry = PuzzleGeometry.get(size);
+		int count = geometry.getCount();
+
+		cubeChunks = new int[count];
+		cubeOffsets = new int[count];
+		cubeCounts = new int[count];
+
+		// Split the cubes into chunks without splitting a cube
+		int chunks = 1;
+		for (int cube = 0, stickers = 0; cube < count; cube++) {
+			int cubeStickers = Integer.bitCount(geometry.getStickers(cube));
+
+			if (stickers + cubeStickers > MAX_CHUNK_STICKERS) {
+				chunks++;
+				stickers = 0;
+			}
+
+			cubeChunks[cube] = chunks - 1;
+			cubeOffsets[cube] = stickers * 6;
+			cubeCounts[cube] = cubeStickers * 6;
+			stickers += cubeStickers;
+		}
+
+		int[] chunkStickers = new int[chunks];
+		for (int cube = 0; cube < count; cube++) {
+			chunkStickers[cubeChunks[cube]] += cubeCounts[cube] / 6;
+		}
+
+		float[][] vertices = new float[chunks][];
+		short[][] indices = new short[chunks][];
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			vertices[chunk] = new float[chunkStickers[chunk] * 4 * VERTEX_SIZE];
+			indices[chunk] = new short[chunkStickers[chunk] * 6];
+		}
+
+		float center = (size - 1) / 2f;
+
+		for (int cube = 0; cube < count; cube++) {
+			float x = (geometry.getLocation(cube, Move.X) - center) * scale
+					* 2f;
+			float y = (geometry.getLocation(cube, Move.Y) - center) * scale
+					* 2f;
+			float z = (geometry.getLocation(cube, Move.Z) - center) * scale
+					* 2f;
+
+			float[] v = vertices[cubeChunks[cube]];
+			short[] d = indices[cubeChunks[cube]];
+			int sticker = cubeOffsets[cube] / 6;
+
+			for (int face = 0; face < 6; face++) {
+				if ((geometry.getStickers(cube) & (1 << face)) == 0) {
+					continue;
+				}
+
+				float color = Color.toFloatBits(colors[face * 3],
+						colors[face * 3 + 1], colors[face * 3 + 2], 1f);
+
+				int axis = PuzzleState.getFaceAxis(face);
+				int sign = PuzzleState.getFaceSign(face);
+
+				for (int corner = 0; corner < 4; corner++) {
+					int j = (sticker * 4 + corner) * VERTEX_SIZE;
+					int[] c = CORNERS[face];
+
+					v[j++] = x + c[corner * 3] * scale;
+					v[j++] = y + c[corner * 3 + 1] * scale;
+					v[j++] = z + c[corner * 3 + 2] * scale;
+
+					v[j++] = (axis == Move.X) ? sign : 0f;
+					v[j++] = (axis == Move.Y) ? sign : 0f;
+					v[j++] = (axis == Move.Z) ? sign : 0f;
+
+					v[j++] = TEX_COORDS[corner * 2];
+					v[j++] = TEX_COORDS[corner * 2 + 1];
+
+					v[j++] = color;
+				}
+
+				// Two triangles, counter clockwise
+				int first = sticker * 4;
+				int i = sticker * 6;
+				d[i++] = (short) first;
+				d[i++] = (short) (first + 1);
+				d[i++] = (short) (first + 2);
+				d[i++] = (short) first;
+				d[i++] = (short) (first + 2);
+				d[i++] = (short) (first + 3);
+
+				sticker++;
+			}
+		}
+
+		this.vertices = vertices;
+		this.indices = indices;
+		isDone = true;
+	}
+
+	/**
+	 * Vertices of each chunk, only valid once isDone returns true
+	 */
+	public float[][] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Indices of each chunk, only valid once isDone returns true
+	 */
+	public short[][] getIndices() {
+		return indices;
+	}
+
+	public int getCubeChunk(int cube) {
+		return cubeChunks[cube];
+	}
+
+	public int getCubeOffset(int cube) {
+		return cubeOffsets[cube];
+	}
+
+	public int getCubeCount(int cube) {
+		return cubeCounts[cube];
+	}
+
+}
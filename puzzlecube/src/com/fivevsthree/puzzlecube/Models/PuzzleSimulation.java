@@ -0,0 +1,153 @@
+package com.fivevsthree.puzzlecube.Models;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fivevsthree.puzzlecube.Views.PuzzleSnapshot;
+
+/**
+ * Steps a puzzle on its own thread at a fixed rate instead of in the render
+ * loop, so the camera, animations and solved checks never hold up a frame.
+ * After each step the cube rotations are copied into a snapshot that the
+ * renderer draws without locking.
+ * 
+ * The snapshots are double buffered with one spare: the simulation fills its
+ * back buffer and swaps it with the ready one, and the renderer swaps its
+ * front buffer with the ready one when a newer step is there. Neither thread
+ * waits for the other and neither ever sees a buffer that is being written.
+ * 
+ * Anything else that changes the puzzle, such as input, has to hold the lock
+ * of the puzzle, see getLock, since the simulation steps while holding it.
+ */
+public class PuzzleSimulation implements Runnable {
+
+	/**
+	 * Steps per second when no rate is given
+	 */
+	public static final int DEFAULT_RATE = 60;
+
+	private final Puzzle puzzle;
+
+	private final long stepNanos;
+	private final float stepSeconds;
+
+	private volatile boolean isRunning;
+	private Thread thread;
+
+	// Written by the simulation, swapped through ready, drawn by the renderer
+	private PuzzleSnapshot back, front;
+	private final AtomicReference<PuzzleSnapshot> ready;
+
+	private long step;
+
+	public PuzzleSimulation(Puzzle puzzle) {
+		this(puzzle, DEFAULT_RATE);
+	}
+
+	/**
+	 * Create a simulation, call start to begin stepping
+	 * 
+	 * @param puzzle
+	 *            puzzle to step
+	 * @param rate
+	 *            steps per second
+	 */
+	public PuzzleSimulation(Puzzle puzzle, int rate) {
+		this.puzzle = puzzle;
+
+		stepNanos = 1000000000L / rate;
+		stepSeconds = 1f / rate;
+
+		int count = puzzle.getCubes().length;
+		back = new PuzzleSnapshot(count);
+		front = new PuzzleSnapshot(count);
+
+		// The first snapshot is taken before the thread starts
+		PuzzleSnapshot first = new PuzzleSnapshot(count);
+		synchronized (puzzle) {
+			first.copy(puzzle, step++);
+		}
+		ready = new AtomicReference<PuzzleSnapshot>(first);
+	}
+
+	/**
+	 * Object to synchronize on while changing the puzzle from another thread
+	 */
+	public Object getLock() {
+		return puzzle;
+	}
+
+	public synchronized void start() {
+		if (thread == null) {
+			isRunning = true;
+
+			thread = new Thread(this, "Puzzle simulation");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stop stepping and wait for the thread to finish
+	 */
+	public synchronized void stop() {
+		if (thread != null) {
+			isRunning = false;
+			thread.interrupt();
+
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			thread = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		long next = System.nanoTime();
+
+		while (isRunning) {
+			synchronized (puzzle) {
+				puzzle.update(stepSeconds);
+
+				// A loaded game may have a different size
+				int count = puzzle.getCubes().length;
+				if (back.rotations.length != count * 16) {
+					back = new PuzzleSnapshot(count);
+				}
+
+				back.copy(puzzle, step++);
+			}
+
+			back = ready.getAndSet(back);
+
+			next += stepNanos;
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+				} catch (InterruptedException e) {
+					return;
+				}
+			} else {
+				// Do not try to catch up after falling behind
+				next = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Newest snapshot of the puzzle, for the render thread only. It stays
+	 * unchanged until the next call.
+	 */
+	public PuzzleSnapshot getSnapshot() {
+		if (ready.get().step > front.step) {
+			front = ready.getAndSet(front);
+		}
+
+		return front;
+	}
+
+}
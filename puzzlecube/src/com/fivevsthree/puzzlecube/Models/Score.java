@@ -12,6 +12,9 @@ public class Score {
 
 	public long seconds;
 	public long moves;
+
+	// Moves with cancelling turns folded, see MoveNormalizer
+	public long halfTurns, quarterTurns, sliceTurns;
 	public String date;
 	public RotationAnimation animation;
 
@@ -52,4 +55,17 @@ public class Score {
 		return String.valueOf(moves);
 	}
 
+	/**
+	 * Folded turns in the half turn, quarter turn and slice turn metrics, or
+	 * a dash for scores saved before they were counted
+	 */
+	public String getTurnsString() {
+		if (halfTurns == 0 && moves != 0) {
+			return "-";
+		}
+
+		return String.format("%d / %d / %d", halfTurns, quarterTurns,
+				sliceTurns);
+	}
+
 }
@@ -33,7 +33,12 @@ public class ScoreList implements Json.Serializable {
 
 		@Override
 		public int compare(Score o1, Score o2) {
-			return (int) (o1.moves - o2.moves);
+			if (o1.moves != o2.moves) {
+				return (int) (o1.moves - o2.moves);
+			}
+
+			// Fewer turns once cancelling moves are folded breaks a tie
+			return (int) (o1.halfTurns - o2.halfTurns);
 		}
 
 	}
@@ -49,11 +54,15 @@ public class ScoreList implements Json.Serializable {
 		scoreList = new ArrayList<Score>();
 	}
 
-	public void addScore(long seconds, long moves, String date,
+	public void addScore(long seconds, long moves, long halfTurns,
+			long quarterTurns, long sliceTurns, String date,
 			RotationAnimation animation) {
 		Score score = new Score();
 		score.seconds = seconds;
 		score.moves = moves;
+		score.halfTurns = halfTurns;
+		score.quarterTurns = quarterTurns;
+		score.sliceTurns = sliceTurns;
 		score.date = date;
 		score.animation = animation;
 
@@ -78,6 +78,7 @@ public class PuzzleCube extends Game {
 
 	public static final long PUZZLE_STARTING_SECONDS = -15;
 	public static final int PUZZLE_SCRAMBLE_ROTATIONS = 20;
+	public static final int PUZZLE_SIZE = 3;
 
 	public static final Color[] DEFAULT_COLOR = {
 			// Bottom - Purple/Orange
@@ -237,7 +238,9 @@ public class PuzzleCube extends Game {
 		Date date = new Date();
 		DateFormat df = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
 		bestScores.addScore(puzzle.getSeconds(), puzzle.getMoves(),
-				df.format(date), puzzle.getRotationAnimation());
+				puzzle.getHalfTurnMoves(), puzzle.getQuarterTurnMoves(),
+				puzzle.getSliceTurnMoves(), df.format(date),
+				puzzle.getRotationAnimation());
 	}
 
 	/**
@@ -20,6 +20,7 @@ import com.badlogic.gdx.graphics.Texture.TextureFilter;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.input.GestureDetector;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.scenes.scene2d.Actor;
@@ -28,29 +29,48 @@ import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.Touchable;
 import com.badlogic.gdx.scenes.scene2d.ui.Image;
 import com.badlogic.gdx.scenes.scene2d.ui.ImageButton;
+import com.badlogic.gdx.scenes.scene2d.ui.ImageButton.ImageButtonStyle;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.scenes.scene2d.utils.Align;
 import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
+import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Scaling;
 import com.fivevsthree.puzzlecube.PuzzleCube;
-import com.fivevsthree.puzzlecube.Callbacks.PuzzleCallback;
+import com.fivevsthree.puzzlecube.Callbacks.PuzzleAdapter;
 import com.fivevsthree.puzzlecube.Callbacks.PuzzleControllerCallback;
+import com.fivevsthree.puzzlecube.Callbacks.PuzzleEventReader;
+import com.fivevsthree.puzzlecube.Callbacks.PuzzleListener;
+import com.fivevsthree.puzzlecube.Controllers.LockedInputProcessor;
 import com.fivevsthree.puzzlecube.Controllers.PuzzleController;
 import com.fivevsthree.puzzlecube.Controllers.ScreenController;
 import com.fivevsthree.puzzlecube.Models.Puzzle;
 import com.fivevsthree.puzzlecube.Models.Puzzle.SolvedAnimation;
+import com.fivevsthree.puzzlecube.Models.PuzzleSimulation;
 import com.fivevsthree.puzzlecube.Tweens.ActorTween;
 import com.fivevsthree.puzzlecube.Tweens.SpriteTween;
+import com.fivevsthree.puzzlecube.Views.PuzzleSnapshot;
 
 public class GameScreen implements Screen {
 
 	private PuzzleCube game;
 
 	private PuzzleController puzzleController;
+
+	// Listener added to the puzzle while the screen is shown
+	private PuzzleListener puzzleListener;
+	private Puzzle listenedPuzzle;
+
+	/*
+	 * Steps the puzzle on its own thread when turned on in the preferences.
+	 * Events are then read on the render thread instead of being sent to the
+	 * listener from the simulation thread.
+	 */
+	private PuzzleSimulation simulation;
+	private PuzzleEventReader eventReader;
 	private GestureDetector gestureDetector;
 	private ScreenController screenController;
 	private InputMultiplexer inputMultiplexer;
@@ -73,7 +93,7 @@ public class GameScreen implements Screen {
 	private SpriteBatch batch;
 	private Skin skin;
 
-	private ImageButton lockButton, undoButton, pauseButton,
+	private ImageButton lockButton, undoButton, redoButton, pauseButton,
 			verticalLockButton, horizontalLockButton, shuffleButton;
 
 	private SolvedAnimation solvedAnimation;
@@ -224,6 +244,22 @@ public class GameScreen implements Screen {
 			}
 		});
 
+		// The redo button is the undo button facing the other way
+		if (!skin.has("redo", ImageButtonStyle.class)) {
+			skin.add("redo", createRedoStyle("undo-button",
+					"undo-button-pressed"), ImageButtonStyle.class);
+			skin.add("redo-disabled", createRedoStyle("undo-button-disabled",
+					"undo-button-disabled"), ImageButtonStyle.class);
+		}
+
+		redoButton = new ImageButton(skin, "redo");
+		redoButton.addListener(new ClickListener() {
+			@Override
+			public void clicked(InputEvent event, float x, float y) {
+				game.getPuzzle().redoRotation(0.4f);
+			}
+		});
+
 		pauseButton = new ImageButton(skin, "pause");
 		pauseButton.addListener(new ClickListener() {
 			@Override
@@ -247,6 +283,25 @@ public class GameScreen implements Screen {
 		});
 	}
 
+	/**
+	 * Create a button style from images of the undo button flipped
+	 * horizontally
+	 */
+	private ImageButtonStyle createRedoStyle(String up, String down) {
+		ImageButtonStyle style = new ImageButtonStyle();
+		style.up = createFlippedDrawable(up);
+		style.down = createFlippedDrawable(down);
+
+		return style;
+	}
+
+	private TextureRegionDrawable createFlippedDrawable(String name) {
+		TextureRegion region = new TextureRegion(skin.getRegion(name));
+		region.flip(true, false);
+
+		return new TextureRegionDrawable(region);
+	}
+
 	private String timeString(long seconds) {
 		/*
 		 * Do not use TimeUnit as some methods, such as toHours and toMinutes,
@@ -406,7 +461,17 @@ public class GameScreen implements Screen {
 		texture.bind();
 
 		// Draw the puzzle
-		game.getPuzzleRenderer().render(game.getPuzzle(), delta);
+		PuzzleSnapshot snapshot = null;
+		if (simulation != null) {
+			synchronized (simulation.getLock()) {
+				while (eventReader.next()) {
+					eventReader.dispatch(puzzleListener);
+				}
+			}
+
+			snapshot = simulation.getSnapshot();
+		}
+		game.getPuzzleRenderer().render(game.getPuzzle(), snapshot, delta);
 
 		// Update and draw the HUD
 		stage.act(delta);
@@ -455,7 +520,12 @@ public class GameScreen implements Screen {
 		lockButton.setChecked(verticalLockButton.isChecked()
 				&& horizontalLockButton.isChecked());
 
-		game.getPuzzle().setCallback(new PuzzleCallback() {
+		// Stop listening to a puzzle from before the screen was hidden
+		if (listenedPuzzle != null) {
+			listenedPuzzle.getEvents().removeListener(puzzleListener);
+		}
+
+		puzzleListener = new PuzzleAdapter() {
 			@Override
 			public void rotationStarted() {
 				puzzleController.pauseHitCheck();
@@ -465,6 +535,11 @@ public class GameScreen implements Screen {
 				undoButton.setTouchable((allowUndo) ? Touchable.enabled
 						: Touchable.disabled);
 
+				boolean allowRedo = !game.getPuzzle().isRedoEmpty();
+				skin.setEnabled(redoButton, allowRedo);
+				redoButton.setTouchable((allowRedo) ? Touchable.enabled
+						: Touchable.disabled);
+
 				if (game.getPuzzle().getSeconds() < 0) {
 					game.getPuzzle().setSeconds(0);
 					game.getPuzzle().resetTimer();
@@ -480,13 +555,16 @@ public class GameScreen implements Screen {
 			public void rotationComplete(boolean solved) {
 				if (!solved) {
 					puzzleController.resumeHitCheck();
-				} else {
-					game.getPuzzle().stopTimer();
-					gameSolved();
-					game.gameSolved();
 				}
 			}
 
+			@Override
+			public void solved() {
+				game.getPuzzle().stopTimer();
+				gameSolved();
+				game.gameSolved();
+			}
+
 			@Override
 			public void timerChanged(long seconds) {
 				timeLabel.setText(timeString(seconds));
@@ -511,10 +589,18 @@ public class GameScreen implements Screen {
 			}
 
 			@Override
-			public void moveCounterChanged(long counter) {
+			public void moveApplied(int move, long counter) {
 				movesLabel.setText(String.valueOf(counter));
 			}
-		});
+		};
+
+		listenedPuzzle = game.getPuzzle();
+		if (preferences.getBoolean("simulation-thread", false)) {
+			eventReader = listenedPuzzle.getEvents().createReader();
+		} else {
+			eventReader = null;
+			listenedPuzzle.getEvents().addListener(puzzleListener);
+		}
 
 		boolean showTimer = preferences.getBoolean("timer", true);
 		boolean showCounter = preferences.getBoolean("counter", true);
@@ -547,6 +633,11 @@ public class GameScreen implements Screen {
 		undoButton.setTouchable((allowUndo) ? Touchable.enabled
 				: Touchable.disabled);
 
+		boolean allowRedo = !game.getPuzzle().isRedoEmpty();
+		skin.setEnabled(redoButton, allowRedo);
+		redoButton.setTouchable((allowRedo) ? Touchable.enabled
+				: Touchable.disabled);
+
 		float width = stage.getWidth();
 
 		table.clear();
@@ -565,7 +656,7 @@ public class GameScreen implements Screen {
 
 		table.row().expandX();
 		table.add(undoButton).bottom().left();
-		table.add();
+		table.add(redoButton).bottom().left();
 		table.add(horizontalLockButton).bottom().right();
 		table.add(lockButton).bottom().right();
 
@@ -573,7 +664,12 @@ public class GameScreen implements Screen {
 		stage.addActor(table);
 
 		// Start accepting input
-		Gdx.input.setInputProcessor(inputMultiplexer);
+		if (eventReader != null) {
+			Gdx.input.setInputProcessor(new LockedInputProcessor(
+					inputMultiplexer, game.getPuzzle()));
+		} else {
+			Gdx.input.setInputProcessor(inputMultiplexer);
+		}
 		Gdx.input.setCatchBackKey(true);
 		Gdx.input.setCatchMenuKey(true);
 
@@ -600,10 +696,34 @@ public class GameScreen implements Screen {
 					PuzzleCube.DEFAULT_MUSIC_VOLUME));
 			backgroundMusic.play();
 		}
+
+		startSimulation();
+	}
+
+	private void startSimulation() {
+		if (eventReader != null && simulation == null) {
+			simulation = new PuzzleSimulation(game.getPuzzle());
+			simulation.start();
+		}
+	}
+
+	private void stopSimulation() {
+		if (simulation != null) {
+			simulation.stop();
+			simulation = null;
+		}
 	}
 
 	@Override
 	public void hide() {
+		stopSimulation();
+		eventReader = null;
+
+		if (listenedPuzzle != null) {
+			listenedPuzzle.getEvents().removeListener(puzzleListener);
+			listenedPuzzle = null;
+		}
+
 		game.getPuzzle().stopTimer();
 		tweenManager.killAll();
 
@@ -615,6 +735,8 @@ public class GameScreen implements Screen {
 
 	@Override
 	public void pause() {
+		stopSimulation();
+
 		game.getPuzzle().stopTimer();
 		tweenManager.killAll();
 
@@ -626,6 +748,7 @@ public class GameScreen implements Screen {
 
 	@Override
 	public void resume() {
+		startSimulation();
 	}
 
 	@Override
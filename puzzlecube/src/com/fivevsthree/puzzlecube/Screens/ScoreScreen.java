@@ -135,14 +135,17 @@ public class ScoreScreen implements Screen {
 		int i = 1;
 		for (Score score : game.getBestScores().getScores()) {
 			scoreTable.row().expandX();
-			((Label) scoreTable.add(String.valueOf(i++)).width(width * 0.1f)
+			((Label) scoreTable.add(String.valueOf(i++)).width(width * 0.08f)
 					.getWidget()).setAlignment(Align.center);
-			((Label) scoreTable.add(score.getDateString()).width(width * 0.4f)
+			((Label) scoreTable.add(score.getDateString()).width(width * 0.32f)
 					.getWidget()).setAlignment(Align.center);
-			((Label) scoreTable.add(score.getTimeString()).width(width * 0.25f)
+			((Label) scoreTable.add(score.getTimeString()).width(width * 0.18f)
 					.getWidget()).setAlignment(Align.center);
 			((Label) scoreTable.add(score.getMovesString())
-					.width(width * 0.25f).getWidget())
+					.width(width * 0.14f).getWidget())
+					.setAlignment(Align.center);
+			((Label) scoreTable.add(score.getTurnsString())
+					.width(width * 0.28f).getWidget())
 					.setAlignment(Align.center);
 		}
 
@@ -175,14 +178,16 @@ public class ScoreScreen implements Screen {
 		header.defaults().spaceBottom(10);
 
 		header.row().expandX();
-		((Label) header.add("#").width(width * 0.1f).getWidget())
+		((Label) header.add("#").width(width * 0.08f).getWidget())
 				.setAlignment(Align.center);
-		((Label) header.add("Date").width(width * 0.4f).getWidget())
+		((Label) header.add("Date").width(width * 0.32f).getWidget())
 				.setAlignment(Align.center);
-		((Label) header.add("Time").width(width * 0.25f).getWidget())
+		((Label) header.add("Time").width(width * 0.18f).getWidget())
 				.setAlignment(Align.center);
-		((Label) header.add("Moves").width(width * 0.25f).getWidget())
+		((Label) header.add("Moves").width(width * 0.14f).getWidget())
 				.setAlignment(Align.center);
+		((Label) header.add("HTM / QTM / STM").width(width * 0.28f)
+				.getWidget()).setAlignment(Align.center);
 
 		Table footer = new Table(skin);
 		footer.setTransform(false);
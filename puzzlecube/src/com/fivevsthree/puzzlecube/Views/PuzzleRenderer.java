@@ -1,12 +1,15 @@
 package com.fivevsthree.puzzlecube.Views;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.Texture.TextureFilter;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
 import com.fivevsthree.puzzlecube.PuzzleCube;
 import com.fivevsthree.puzzlecube.Models.Cube;
+import com.fivevsthree.puzzlecube.Models.Layer;
 import com.fivevsthree.puzzlecube.Models.Puzzle;
 
 /**
@@ -17,9 +20,16 @@ import com.fivevsthree.puzzlecube.Models.Puzzle;
  */
 public class PuzzleRenderer {
 
+	private static final Cube[] NO_CUBES = new Cube[0];
+
 	private ShaderProgram shader;
 	private Texture texture;
 
+	// Uniforms read back out of a snapshot
+	private final Matrix4 camera = new Matrix4();
+	private final Matrix4 rotation = new Matrix4();
+	private final Color color = new Color();
+
 	/**
 	 * Initialize the renderer
 	 */
@@ -42,6 +52,21 @@ public class PuzzleRenderer {
 	 *            time in seconds since last render
 	 */
 	public void render(Puzzle puzzle, float delta) {
+		render(puzzle, null, delta);
+	}
+
+	/**
+	 * Draw the puzzle as it was in a snapshot, see PuzzleSimulation
+	 * 
+	 * @param puzzle
+	 *            puzzle to draw
+	 * @param snapshot
+	 *            state to draw the puzzle in, or null to update the puzzle and
+	 *            draw it as it is
+	 * @param delta
+	 *            time in seconds since last render
+	 */
+	public void render(Puzzle puzzle, PuzzleSnapshot snapshot, float delta) {
 		Gdx.gl.glClear(GL20.GL_DEPTH_BUFFER_BIT);
 
 		// This will make sure cubes closest to camera will be drawn in front
@@ -51,14 +76,24 @@ public class PuzzleRenderer {
 		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
 
 		if (puzzle != null) {
-			puzzle.update(delta);
+			if (snapshot == null) {
+				puzzle.update(delta);
+			}
 
 			// Make sure there were no problems compiling the shader
 			if (shader.isCompiled()) {
 				shader.begin();
-				shader.setUniformMatrix("u_camera", puzzle.getCamera()
-						.getCombinedView());
-				shader.setUniformf("u_color", puzzle.color);
+				if (snapshot == null) {
+					shader.setUniformMatrix("u_camera", puzzle.getCamera()
+							.getCombinedView());
+					shader.setUniformf("u_color", puzzle.color);
+				} else {
+					camera.set(snapshot.combinedView);
+					shader.setUniformMatrix("u_camera", camera);
+					color.set(snapshot.color[0], snapshot.color[1],
+							snapshot.color[2], snapshot.color[3]);
+					shader.setUniformf("u_color", color);
+				}
 
 				texture.bind();
 
@@ -68,12 +103,25 @@ public class PuzzleRenderer {
 				 * exception on an Android device.
 				 */
 
-				for (Cube cube : puzzle.getCubes()) {
+				Cube[] cubes = puzzle.getCubes();
+
+				// A snapshot taken before the puzzle was resized is skipped
+				if (snapshot != null
+						&& snapshot.rotations.length != cubes.length * 16) {
+					cubes = NO_CUBES;
+				}
+
+				for (Cube cube : cubes) {
 					/*
 					 * We keep a model for each logical cube so we can apply
 					 * transformations to each individual cube.
 					 */
-					shader.setUniformMatrix("u_rotation", cube.rotation);
+					if (snapshot == null) {
+						shader.setUniformMatrix("u_rotation", cube.rotation);
+					} else {
+						shader.setUniformMatrix("u_rotation",
+								snapshot.getRotation(cube.index, rotation));
+					}
 
 					/*
 					 * Render the portion of the mesh that belongs to the
@@ -82,6 +130,17 @@ public class PuzzleRenderer {
 					puzzle.getMesh().render(shader, cube.index);
 				}
 
+				// Cover the inside of the puzzle around a turning layer
+				if (snapshot == null) {
+					Layer layer = puzzle.getRotatingLayer();
+					if (layer != null) {
+						puzzle.getMesh().renderCaps(shader, layer);
+					}
+				} else if (snapshot.rotatingMove >= 0 && cubes.length > 0) {
+					puzzle.getMesh().renderCaps(shader, snapshot.rotatingMove,
+							snapshot.rotatingAngle);
+				}
+
 				shader.end();
 			}
 		}
@@ -0,0 +1,105 @@
+package com.fivevsthree.puzzlecube.Views;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.fivevsthree.puzzlecube.Models.Cube;
+import com.fivevsthree.puzzlecube.Models.Layer;
+import com.fivevsthree.puzzlecube.Models.Puzzle;
+
+/**
+ * Everything the renderer needs to draw one step of a puzzle, copied out of
+ * the puzzle so it can be drawn while the puzzle keeps changing on another
+ * thread, see PuzzleSimulation. The arrays are allocated once and filled
+ * again for every step.
+ */
+public class PuzzleSnapshot {
+
+	/**
+	 * Rotation matrix of each cube, 16 values for each cube index
+	 */
+	public final float[] rotations;
+
+	/**
+	 * Combined projection and view matrix of the camera
+	 */
+	public final float[] combinedView = new float[16];
+
+	/**
+	 * Red, green, blue and alpha the puzzle is tinted with
+	 */
+	public final float[] color = new float[4];
+
+	/**
+	 * Move code of the layer being animated, or -1 if no layer is turning
+	 */
+	public int rotatingMove;
+
+	/**
+	 * Degrees the turning layer has turned so far
+	 */
+	public float rotatingAngle;
+
+	/**
+	 * Whether the puzzle was solved, checked off the render thread
+	 */
+	public boolean solved;
+
+	/**
+	 * Number of the step the snapshot was taken at, higher is newer
+	 */
+	public long step;
+
+	/**
+	 * Create a snapshot for a puzzle
+	 * 
+	 * @param cubeCount
+	 *            number of cubes in the puzzle
+	 */
+	public PuzzleSnapshot(int cubeCount) {
+		rotations = new float[cubeCount * 16];
+	}
+
+	/**
+	 * Copy the current state of a puzzle
+	 * 
+	 * @param puzzle
+	 *            puzzle with the same number of cubes
+	 * @param step
+	 *            number of the step
+	 */
+	public void copy(Puzzle puzzle, long step) {
+		for (Cube cube : puzzle.getCubes()) {
+			System.arraycopy(cube.rotation.val, 0, rotations, cube.index * 16,
+					16);
+		}
+
+		System.arraycopy(puzzle.getCamera().getCombinedView().val, 0,
+				combinedView, 0, 16);
+
+		color[0] = puzzle.color.r;
+		color[1] = puzzle.color.g;
+		color[2] = puzzle.color.b;
+		color[3] = puzzle.color.a;
+
+		Layer layer = puzzle.getRotatingLayer();
+		rotatingMove = (layer != null) ? layer.getMove() : -1;
+		rotatingAngle = (layer != null) ? layer.getAngle() : 0f;
+
+		solved = puzzle.isSolved();
+		this.step = step;
+	}
+
+	/**
+	 * Copy the rotation of a cube into a matrix
+	 * 
+	 * @param cubeIndex
+	 *            index of the cube
+	 * @param matrix
+	 *            matrix to set
+	 * @return the matrix
+	 */
+	public Matrix4 getRotation(int cubeIndex, Matrix4 matrix) {
+		System.arraycopy(rotations, cubeIndex * 16, matrix.val, 0, 16);
+		return matrix;
+	}
+
+}
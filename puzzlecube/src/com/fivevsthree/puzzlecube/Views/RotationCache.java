@@ -0,0 +1,64 @@
+package com.fivevsthree.puzzlecube.Views;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.fivevsthree.puzzlecube.Models.Rotation;
+
+/**
+ * Exact Matrix4 for each of the 24 cube rotations, so a cube at rest is
+ * always drawn with a matrix of whole numbers
+ */
+public class RotationCache {
+
+	private static final Matrix4[] MATRICES = new Matrix4[Rotation.COUNT];
+
+	static {
+		for (int rotation = 0; rotation < Rotation.COUNT; rotation++) {
+			Matrix4 matrix = new Matrix4();
+
+			for (int row = 0; row < 3; row++) {
+				for (int column = 0; column < 3; column++) {
+					// Matrix4 values are column major
+					matrix.val[column * 4 + row] = Rotation.get(rotation, row,
+							column);
+				}
+			}
+
+			MATRICES[rotation] = matrix;
+		}
+	}
+
+	private RotationCache() {
+	}
+
+	/**
+	 * Matrix of a rotation. The matrix is shared and must not be modified.
+	 * 
+	 * @param rotation
+	 *            rotation index, see Rotation
+	 * @return rotation matrix
+	 */
+	public static Matrix4 get(int rotation) {
+		return MATRICES[rotation];
+	}
+
+	/**
+	 * Find the rotation closest to a matrix, used to snap matrices from older
+	 * saved games that have drifted
+	 * 
+	 * @param matrix
+	 *            rotation matrix
+	 * @return rotation index
+	 */
+	public static int find(Matrix4 matrix) {
+		float[] rows = new float[9];
+
+		for (int row = 0; row < 3; row++) {
+			for (int column = 0; column < 3; column++) {
+				rows[row * 3 + column] = matrix.val[column * 4 + row];
+			}
+		}
+
+		return Rotation.nearest(rows);
+	}
+
+}